@@ -0,0 +1,119 @@
+import benchmarks.Workbench;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Default-package side of {@link Workbench}: forwards each operation to the
+ * puzzle classes. One instance belongs to one benchmark thread.
+ */
+public final class PuzzleWorkbench implements Workbench {
+    // 9! / 2: the half of the 3x3 permutations with the goal's parity
+    private static final int REACHABLE_STATES = 181440;
+
+    private Board board;
+    private Board copy;
+    private final StateTable closed = new StateTable();
+    private final Puzzle puzzle = new Puzzle();
+
+    @Override
+    public void setBoard(String state, String heuristic) {
+        board = new Board();
+        board.setState(state);
+        board.setAlgorithmType("astar");
+        board.setHeuristicType(heuristic);
+        copy = new Board();
+        copy.setState(state);
+    }
+
+    @Override
+    public List<?> validChildren() {
+        return board.getValidChildren();
+    }
+
+    @Override
+    public int computeHeuristic() {
+        return board.computeHeuristic();
+    }
+
+    @Override
+    public int boardHashCode() {
+        return board.hashCode();
+    }
+
+    @Override
+    public boolean boardEquals() {
+        return board.equals(copy);
+    }
+
+    @Override
+    public long[] randomStates(int count, long seed) {
+        // every reachable state, by breadth-first search from the goal
+        BoardSize size = BoardSize.EIGHT_PUZZLE;
+        StateTable seen = new StateTable(REACHABLE_STATES);
+        long[] states = new long[REACHABLE_STATES];
+        states[0] = size.getGoalState();
+        seen.offer(states[0], 0, StateTable.NO_PARENT);
+        int found = 1;
+        for(int i = 0; i < found; i++) {
+            int blank = size.blank(states[i]);
+            for(int direction : size.legalMoves(blank)) {
+                long next = size.move(states[i], direction);
+                if(seen.offer(next, 0, StateTable.NO_PARENT)) {
+                    states[found++] = next;
+                }
+            }
+        }
+        if(count > found) {
+            throw new IllegalArgumentException("Only " + found + " 3x3 states are reachable, not " + count);
+        }
+
+        // the first count places of a seeded Fisher-Yates shuffle
+        Random random = new Random(seed);
+        for(int i = 0; i < count; i++) {
+            int j = i + random.nextInt(found - i);
+            long t = states[i];
+            states[i] = states[j];
+            states[j] = t;
+        }
+        return Arrays.copyOf(states, count);
+    }
+
+    @Override
+    public int closedInsert(long[] keys) {
+        closed.clear();
+        for(int i = 0; i < keys.length; i++) {
+            closed.offer(keys[i], i, StateTable.NO_PARENT);
+        }
+        return closed.size();
+    }
+
+    @Override
+    public long closedLookup(long[] keys) {
+        long sum = 0;
+        for(long key : keys) {
+            sum += closed.getG(key);
+        }
+        return sum;
+    }
+
+    @Override
+    public Object solveAStar(String state, String heuristic) {
+        start(state);
+        return puzzle.solvePuzzleAStar(heuristic);
+    }
+
+    @Override
+    public Object beamSearch(String state, int width, String heuristic) {
+        start(state);
+        return puzzle.beamSearch(width, heuristic);
+    }
+
+    private void start(String state) {
+        Board start = new Board();
+        start.setState(state);
+        puzzle.setInteractiveBoard(start);
+        puzzle.setFoundGoal(null);
+    }
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-node costs of the searches: successor generation, heuristic evaluation
+ * and the hashCode/equals pair used by hashed collections.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({"724 5b6 831", "1b23 4567 89AB CDEF"})
+    public String state;
+
+    @Param({"h1", "h2", "h3", "h4", "h5"})
+    public String heuristic;
+
+    private Workbench workbench;
+
+    @Setup
+    public void setUp() {
+        workbench = Workbench.create();
+        workbench.setBoard(state, heuristic);
+    }
+
+    @Benchmark
+    public List<?> getValidChildren() {
+        return workbench.validChildren();
+    }
+
+    @Benchmark
+    public int computeHeuristic() {
+        return workbench.computeHeuristic();
+    }
+
+    @Benchmark
+    public int hashCodeBoard() {
+        return workbench.boardHashCode();
+    }
+
+    @Benchmark
+    public boolean equalsBoard() {
+        return workbench.boardEquals();
+    }
+}
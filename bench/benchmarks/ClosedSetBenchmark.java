@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed table inserts and lookups over distinct reachable 3x3 states. Lookups
+ * are split between keys that are present and keys that are not, since a miss
+ * has to probe until it finds an empty slot. Each call covers all size keys;
+ * divide by size for the cost per key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClosedSetBenchmark {
+    @Param({"1024", "65536"})
+    public int size;
+
+    private Workbench workbench;
+    private long[] present;
+    private long[] absent;
+
+    @Setup
+    public void setUp() {
+        workbench = Workbench.create();
+        long[] states = workbench.randomStates(2 * size, 42);
+        present = new long[size];
+        absent = new long[size];
+        System.arraycopy(states, 0, present, 0, size);
+        System.arraycopy(states, size, absent, 0, size);
+        workbench.closedInsert(present);
+    }
+
+    @Benchmark
+    public int insert() {
+        return workbench.closedInsert(present);
+    }
+
+    @Benchmark
+    public long lookupHit() {
+        return workbench.closedLookup(present);
+    }
+
+    @Benchmark
+    public long lookupMiss() {
+        return workbench.closedLookup(absent);
+    }
+}
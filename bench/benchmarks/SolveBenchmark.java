@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end solves of a fixed corpus of 3x3 instances whose optimal solutions
+ * take 12, 16, 20, 26 and 31 moves (the most any 3x3 board needs). Run with
+ * -prof gc, as the bench target does, to see the bytes allocated per solve
+ * next to the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+    @Param({"251 348 67b", "316 752 48b", "645 1b8 237", "724 5b6 831", "8b6 547 231"})
+    public String state;
+
+    @Param({"h1", "h2", "h4", "h5"})
+    public String heuristic;
+
+    @Param({"100"})
+    public int beamWidth;
+
+    private Workbench workbench;
+
+    @Setup
+    public void setUp() {
+        workbench = Workbench.create();
+    }
+
+    @Benchmark
+    public Object solvePuzzleAStar() {
+        return workbench.solveAStar(state, heuristic);
+    }
+
+    @Benchmark
+    public Object beamSearch() {
+        return workbench.beamSearch(state, beamWidth, heuristic);
+    }
+}
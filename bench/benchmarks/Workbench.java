@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.util.List;
+
+/**
+ * The operations the benchmarks measure.
+ *
+ * JMH will not generate benchmarks for classes in the default package, and a
+ * named package cannot refer to the puzzle classes, which live there. The
+ * benchmarks therefore call through this interface, implemented by
+ * PuzzleWorkbench in the default package. Each benchmark only ever sees that
+ * one implementation, so the calls are inlined like direct ones.
+ */
+public interface Workbench {
+
+    /**
+     * @return a new PuzzleWorkbench
+     */
+    static Workbench create() {
+        try {
+            return (Workbench) Class.forName("PuzzleWorkbench").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("PuzzleWorkbench is not on the benchmark classpath", e);
+        }
+    }
+
+    /**
+     * Set the board the board-level operations use, and an equal copy of it
+     * @param state board in setState syntax
+     * @param heuristic heuristic label, as for the solve command
+     */
+    void setBoard(String state, String heuristic);
+
+    List<?> validChildren();
+
+    int computeHeuristic();
+
+    int boardHashCode();
+
+    boolean boardEquals();
+
+    /**
+     * @param count number of distinct states; at most the 181440 reachable ones
+     * @return packed reachable 3x3 states, drawn without replacement in a seeded random order
+     */
+    long[] randomStates(int count, long seed);
+
+    /**
+     * Clear the closed table and offer every key to it
+     * @return the table size afterwards
+     */
+    int closedInsert(long[] keys);
+
+    /**
+     * @return sum of the g values the closed table holds for the keys
+     */
+    long closedLookup(long[] keys);
+
+    /**
+     * Solve a board from scratch with A*
+     * @return the solved board, or null
+     */
+    Object solveAStar(String state, String heuristic);
+
+    /**
+     * Solve a board from scratch with beam search
+     * @return the solved board, or null
+     */
+    Object beamSearch(String state, int width, String heuristic);
+}
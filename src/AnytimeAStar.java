@@ -0,0 +1,371 @@
+import java.util.Arrays;
+
+/**
+ * Anytime repairing A* (ARA*) for a single packed board (up to 4x4).
+ *
+ * The first pass is a weighted A* ordered by g + w * h with a large w, which
+ * finds a solution quickly. Each later pass lowers w and carries on from the
+ * previous pass's work: every g value and parent link is kept, the open list is
+ * reordered under the new weight, and states whose g improved after they were
+ * expanded (the inconsistent states) are queued again, so a pass only expands
+ * what the smaller weight changes. States are expanded at most once per pass.
+ *
+ * After each pass the best solution is at most min(w, g(goal) / least g + h
+ * on the open and inconsistent lists) times longer than an optimal one, given
+ * an admissible heuristic. The search ends when that bound reaches 1, or at the
+ * deadline or the node limit, keeping the best solution found by then.
+ */
+public final class AnytimeAStar {
+    public static final double DEFAULT_WEIGHT = 3.0;
+    /** How much the weight drops between passes, unless the bound allows a larger drop */
+    public static final double WEIGHT_STEP = 0.5;
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    /**
+     * Receives each solution better than the ones before it
+     */
+    public interface Listener {
+        /**
+         * @param moves directions to move the blank from the start to the goal
+         * @param weight weight of the pass that found or confirmed the solution
+         * @param bound the solution is at most this many times longer than an optimal one
+         */
+        void improved(int[] moves, double weight, double bound);
+    }
+
+    private final BoardSize size;
+    private final Heuristic heuristic;
+    private final int maxNodes;
+    private final SearchStats stats;
+    private SearchLimit limit = SearchLimit.NONE;
+    // best g and parent of every state reached
+    private final StateTable table = new StateTable();
+    // states expanded in the current pass
+    private final StateTable closed = new StateTable();
+    private final Entries open = new Entries();
+    private final Entries inconsistent = new Entries();
+
+    private double weight;
+    private int goalG = INFINITY;
+    private double bound = Double.POSITIVE_INFINITY;
+    private long deadline;
+    private int nodesVisited;
+    private boolean exceededMax;
+    private boolean timedOut;
+
+    /**
+     * @param size board size; must be packed
+     * @param heuristicType a label accepted by {@link Heuristic#fromLabel}
+     * @param weight weight of the first pass; at least 1
+     * @param maxNodes expansion limit across all passes
+     * @param stats receives the search counters
+     */
+    public AnytimeAStar(BoardSize size, String heuristicType, double weight, int maxNodes, SearchStats stats) {
+        if(!size.isPacked()) {
+            throw new IllegalArgumentException("Anytime A* supports boards of up to 16 cells, not " + size);
+        }
+        if(!(weight >= 1)) {
+            throw new IllegalArgumentException("Weight must be at least 1.");
+        }
+        this.size = size;
+        this.heuristic = Heuristic.forSearch(size, heuristicType);
+        this.weight = weight;
+        this.maxNodes = maxNodes;
+        this.stats = stats;
+    }
+
+    /**
+     * Search until the solution is known to be optimal, the deadline passes or
+     * the node limit is hit
+     * @param start packed start state
+     * @param deadline System.nanoTime() at which to stop
+     * @param listener told about every improvement, on the calling thread; may be null
+     * @return the best solution found, or null if none was found in time
+     */
+    public int[] solve(long start, long deadline, Listener listener) {
+        this.deadline = deadline;
+        if(!size.isSolvable(start)) {
+            return null;
+        }
+        table.put(start, 0, StateTable.NO_PARENT);
+        open.add(start, 0, heuristic.evaluate(size, start));
+        if(start == size.getGoalState()) {
+            goalG = 0;
+        }
+
+        int[] best = null;
+        while(true) {
+            boolean completed = improvePath();
+            // the weight only bounds the incumbent once a pass has run to the end;
+            // the ratio to the least f over the frontier always does
+            double passBound = goalG == INFINITY ? Double.POSITIVE_INFINITY
+                    : Math.max(1, completed ? Math.min(weight, goalG / leastF()) : goalG / leastF());
+            boolean shorter = goalG != INFINITY && (best == null || goalG < best.length);
+            if(shorter) {
+                best = path(start);
+            }
+            if(shorter || passBound < bound) {
+                bound = Math.min(bound, passBound);
+                if(listener != null) {
+                    listener.improved(best, weight, bound);
+                }
+            }
+            if(timedOut || exceededMax || bound <= 1 || (open.isEmpty() && goalG == INFINITY)) {
+                break;
+            }
+
+            // the next pass starts from everything this one learned
+            weight = Math.max(1, Math.min(weight - WEIGHT_STEP, bound));
+            for(int i = 0; i < inconsistent.count; i++) {
+                open.add(inconsistent.state[i], inconsistent.g[i], inconsistent.h[i]);
+            }
+            inconsistent.clear();
+            closed.clear();
+            open.reorder();
+        }
+        stats.observeClosed(table.size());
+        return best;
+    }
+
+    /**
+     * @param limit deadline and cancellation, checked alongside the node limit
+     */
+    public void setLimit(SearchLimit limit) {
+        this.limit = limit;
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
+
+    public boolean getExceedMax() {
+        return exceededMax;
+    }
+
+    /**
+     * @return true if the deadline ended the search
+     */
+    public boolean getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @return weight of the last pass
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return how many times longer than an optimal one the best solution may be
+     */
+    public double getBound() {
+        return bound;
+    }
+
+    /**
+     * Expand states in order of g + w * h until none could lead to a shorter solution
+     * @return true if the pass ran to the end, false if a limit cut it short
+     */
+    private boolean improvePath() {
+        while(!open.isEmpty()) {
+            long s = open.state[0];
+            int g = open.g[0];
+            int h = open.h[0];
+            if(g != table.getG(s) || closed.contains(s)) {
+                // a cheaper copy was queued, or it was expanded earlier in this pass
+                open.poll();
+                continue;
+            }
+            if(goalG <= open.key[0]) {
+                return true;
+            }
+            if(nodesVisited >= maxNodes || limit.shouldStop(nodesVisited)) {
+                exceededMax = true;
+                return false;
+            }
+            if(nodesVisited % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+                timedOut = true;
+                return false;
+            }
+            open.poll();
+            closed.put(s, g, StateTable.NO_PARENT);
+            nodesVisited++;
+            stats.expanded();
+
+            int blank = size.blank(s);
+            int[] legal = size.legalMoves(blank);
+            stats.generated(legal.length);
+            for(int direction : legal) {
+                long child = size.move(s, direction);
+                int known = table.size();
+                if(!table.offer(child, g + 1, s)) {
+                    stats.duplicate();
+                    continue;
+                }
+                int target = size.target(blank, direction);
+                int hChild = heuristic.update(size, h, child, BoardSize.tileAt(s, target), target, blank);
+                if(child == size.getGoalState()) {
+                    goalG = g + 1;
+                }
+                if(table.size() == known) {
+                    stats.reopened();
+                }
+                if(closed.contains(child)) {
+                    inconsistent.add(child, g + 1, hChild);
+                }
+                else {
+                    open.add(child, g + 1, hChild);
+                }
+            }
+            stats.observeOpen(open.count);
+        }
+        return true;
+    }
+
+    /**
+     * @return the least g + h over the open and inconsistent states; never less than 1
+     */
+    private double leastF() {
+        int least = goalG;
+        least = Math.min(least, open.leastF());
+        least = Math.min(least, inconsistent.leastF());
+        return Math.max(1, least);
+    }
+
+    /**
+     * Follow the parent links from the goal back to the start. A parent's g may
+     * have dropped since the link was made, so the path can be shorter than g(goal).
+     */
+    private int[] path(long start) {
+        int length = 0;
+        for(long s = size.getGoalState(); s != start; s = table.getParent(s)) {
+            length++;
+        }
+        int[] moves = new int[length];
+        long s = size.getGoalState();
+        for(int i = length - 1; i >= 0; i--) {
+            long parent = table.getParent(s);
+            moves[i] = size.directionBetween(parent, s);
+            s = parent;
+        }
+        return moves;
+    }
+
+    /**
+     * States with their g and h, kept as a binary heap on g + w * h (deeper
+     * first on ties) when used as the open list. Entries go stale when their
+     * state is reached more cheaply and are skipped when they surface.
+     */
+    private final class Entries {
+        private long[] state = new long[1024];
+        private int[] g = new int[1024];
+        private int[] h = new int[1024];
+        private double[] key = new double[1024];
+        private int count;
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        void clear() {
+            count = 0;
+        }
+
+        void add(long s, int gValue, int hValue) {
+            if(count == state.length) {
+                int capacity = count << 1;
+                state = Arrays.copyOf(state, capacity);
+                g = Arrays.copyOf(g, capacity);
+                h = Arrays.copyOf(h, capacity);
+                key = Arrays.copyOf(key, capacity);
+            }
+            set(count, s, gValue, hValue, gValue + weight * hValue);
+            count++;
+            up(count - 1);
+        }
+
+        void poll() {
+            count--;
+            if(count > 0) {
+                set(0, state[count], g[count], h[count], key[count]);
+                down(0);
+            }
+        }
+
+        /**
+         * Drop the stale entries and rebuild the heap under the current weight
+         */
+        void reorder() {
+            int kept = 0;
+            for(int i = 0; i < count; i++) {
+                if(g[i] == table.getG(state[i])) {
+                    set(kept++, state[i], g[i], h[i], g[i] + weight * h[i]);
+                }
+            }
+            count = kept;
+            for(int i = (count >> 1) - 1; i >= 0; i--) {
+                down(i);
+            }
+        }
+
+        int leastF() {
+            int least = INFINITY;
+            for(int i = 0; i < count; i++) {
+                if(g[i] == table.getG(state[i])) {
+                    least = Math.min(least, g[i] + h[i]);
+                }
+            }
+            return least;
+        }
+
+        private void set(int i, long s, int gValue, int hValue, double k) {
+            state[i] = s;
+            g[i] = gValue;
+            h[i] = hValue;
+            key[i] = k;
+        }
+
+        private boolean before(int a, int b) {
+            return key[a] != key[b] ? key[a] < key[b] : g[a] > g[b];
+        }
+
+        private void swap(int a, int b) {
+            long s = state[a];
+            int gValue = g[a];
+            int hValue = h[a];
+            double k = key[a];
+            set(a, state[b], g[b], h[b], key[b]);
+            set(b, s, gValue, hValue, k);
+        }
+
+        private void up(int i) {
+            while(i > 0) {
+                int p = (i - 1) >> 1;
+                if(!before(i, p)) {
+                    break;
+                }
+                swap(i, p);
+                i = p;
+            }
+        }
+
+        private void down(int i) {
+            while(true) {
+                int c = (i << 1) + 1;
+                if(c >= count) {
+                    break;
+                }
+                if(c + 1 < count && before(c + 1, c)) {
+                    c++;
+                }
+                if(!before(c, i)) {
+                    break;
+                }
+                swap(i, c);
+                i = c;
+            }
+        }
+    }
+}
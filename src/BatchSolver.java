@@ -0,0 +1,164 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Solves many independent start states in parallel.
+ *
+ * Work is spread over a dedicated fork-join pool. Each pool thread keeps its
+ * own Puzzle, and with it its own open list and closed table, so workers never
+ * share search state and reuse their tables from one instance to the next.
+ * Results come back in input order.
+ */
+public final class BatchSolver {
+    private final String algorithm;
+    private final String argument;
+    private final int maxNodes;
+    private final BucketQueue.TieBreak tieBreak;
+    private final int parallelism;
+    private final ThreadLocal<Puzzle> workers;
+
+    /**
+     * @param algorithm "A-star", "IDA-star", "beam" or "optimal"
+     * @param argument heuristic or beam width, as for the solve command
+     * @param maxNodes node limit per instance
+     * @param tieBreak open list tie-breaking policy
+     * @param parallelism number of worker threads
+     */
+    public BatchSolver(String algorithm, String argument, int maxNodes, BucketQueue.TieBreak tieBreak,
+                       int parallelism) {
+        if(Puzzle.algorithmLabel(algorithm) == null) {
+            throw new IllegalArgumentException("Search algorithm not recognized. Check spelling.");
+        }
+        this.algorithm = algorithm;
+        this.argument = argument;
+        this.maxNodes = maxNodes;
+        this.tieBreak = tieBreak;
+        this.parallelism = Math.max(1, parallelism);
+        this.workers = ThreadLocal.withInitial(() -> {
+            Puzzle p = new Puzzle(new Board(), this.maxNodes);
+            p.setTieBreak(this.tieBreak);
+            return p;
+        });
+    }
+
+    public List<Result> solveAll(Stream<Board> starts) {
+        return solveAll(starts.collect(Collectors.toList()));
+    }
+
+    /**
+     * Solve every start state
+     * @param starts boards to solve; they are not modified
+     * @return one result per start, in iteration order
+     */
+    public List<Result> solveAll(Collection<Board> starts) {
+        Board[] boards = starts.toArray(new Board[0]);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> IntStream.range(0, boards.length)
+                    .parallel()
+                    .mapToObj(i -> solveOne(i, boards[i]))
+                    .collect(Collectors.toList()))
+                    .get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch solve interrupted", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private Result solveOne(int index, Board start) {
+        Puzzle p = workers.get();
+        Board board = start.getSize().isPacked() ? new Board(start.getSize(), start.getState())
+                : new Board(start.getSize(), start.getTiles());
+        p.setInteractiveBoard(board);
+        p.setFoundGoal(null);
+
+        long begin = System.nanoTime();
+        Board solution;
+        String error = null;
+        try {
+            solution = p.solve(algorithm, argument);
+        }
+        catch (IllegalArgumentException e) {
+            solution = null;
+            error = e.getMessage();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        int moves = solution == null ? -1 : Puzzle.pathLength(solution);
+        return new Result(index, moves, p.getNodesVisited(), elapsed, error);
+    }
+
+    /**
+     * Outcome and statistics for one instance of a batch.
+     */
+    public static final class Result {
+        private final int index;
+        private final int moves;
+        private final int nodesVisited;
+        private final long nanos;
+        private final String error;
+
+        Result(int index, int moves, int nodesVisited, long nanos, String error) {
+            this.index = index;
+            this.moves = moves;
+            this.nodesVisited = nodesVisited;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        /**
+         * @return position of the instance in the input
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public boolean isSolved() {
+            return moves >= 0;
+        }
+
+        /**
+         * @return solution length, or -1 if the goal was not reached
+         */
+        public int getMoves() {
+            return moves;
+        }
+
+        public int getNodesVisited() {
+            return nodesVisited;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return why the instance could not be attempted, or null
+         */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            String outcome = error != null ? error : isSolved() ? "moves=" + moves : "not solved";
+            return String.format("%d: %s nodes=%d time=%.3fms", index, outcome, nodesVisited, nanos / 1e6);
+        }
+    }
+}
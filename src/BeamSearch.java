@@ -0,0 +1,338 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Beam search over packed boards (up to 4x4), keeping the k best states of
+ * each layer as primitive arrays.
+ *
+ * A layer is expanded in parallel: each worker writes the successors of a run
+ * of beam states, and their heuristic values, into that run's slots of a flat
+ * array. The successors are then offered to a {@link RecentStates} filter in
+ * beam order, which drops every state an earlier beam state of the same layer
+ * reached or a recent beam kept. The next beam is chosen by selecting the k
+ * smallest keys, (h, then the later successor first), in linear time and
+ * sorting only those k. Each kept state records the index of its parent in
+ * the previous beam, and the path is rebuilt from those links, so the search
+ * holds on to the beams it kept and nothing else.
+ *
+ * Boards are ranked exactly as the board-based beam search ranks them, so both
+ * find the same solution.
+ */
+public final class BeamSearch {
+    /** Beams narrower than this are expanded on the calling thread */
+    public static final int PARALLEL_THRESHOLD = 256;
+    private static final int CHUNK = 64;
+    private static final long NONE = -1;
+
+    private final BoardSize size;
+    private final Heuristic heuristic;
+    private final int width;
+    private final int maxNodes;
+    private final SearchStats stats;
+    private final RecentStates recent;
+    private SearchLimit limit = SearchLimit.NONE;
+
+    private long[] beam;
+    private int[] beamH;
+    // index of each beam state's parent in the previous beam
+    private int[] beamParent;
+    private int beamSize;
+    // successors of the current beam, four slots per beam state with NONE for an illegal move
+    private long[] children;
+    private int[] childH;
+    private long[] next;
+    private int[] nextH;
+    private int[] nextParent;
+    private int nextSize;
+    private long[] keys;
+    // every beam kept so far, start first, with their parent indices
+    private final List<long[]> layers = new ArrayList<>();
+    private final List<int[]> layerParents = new ArrayList<>();
+
+    private int nodesVisited;
+    private boolean exceededMax;
+
+    /**
+     * @param size board size; must be packed
+     * @param heuristicType a label accepted by {@link Heuristic#fromLabel}
+     * @param width number of states kept per layer
+     * @param maxNodes expansion limit
+     * @param stats receives the search counters
+     * @param recent duplicate filter, reset before the search
+     */
+    public BeamSearch(BoardSize size, String heuristicType, int width, int maxNodes,
+                      SearchStats stats, RecentStates recent) {
+        if(!size.isPacked()) {
+            throw new IllegalArgumentException("Beam search supports boards of up to 16 cells, not " + size);
+        }
+        if(width < 1) {
+            throw new IllegalArgumentException("Beam width must be at least 1.");
+        }
+        this.size = size;
+        this.heuristic = Heuristic.forSearch(size, heuristicType);
+        this.width = width;
+        this.maxNodes = maxNodes;
+        this.stats = stats;
+        this.recent = recent;
+        int initial = Math.min(width, 1024);
+        beam = new long[initial];
+        beamH = new int[initial];
+        beamParent = new int[initial];
+        children = new long[initial * 4];
+        childH = new int[initial * 4];
+        next = new long[initial * 4];
+        nextH = new int[initial * 4];
+        nextParent = new int[initial * 4];
+        keys = new long[initial * 4];
+    }
+
+    /**
+     * Search from the start state until the goal enters the beam
+     * @param start packed start state
+     * @return the directions to move the blank, or null if the beam ran dry or
+     * the node limit was hit
+     */
+    public int[] solve(long start) {
+        nodesVisited = 0;
+        exceededMax = false;
+        recent.reset(start);
+        layers.clear();
+        layerParents.clear();
+        layers.add(new long[] {start});
+        layerParents.add(new int[] {0});
+
+        // the start's successors form the first layer, in move order when all of them fit
+        collectStart(start);
+        if(start == size.getGoalState()) {
+            return new int[0];
+        }
+        if(nextSize < width) {
+            swap();
+        }
+        else {
+            select();
+        }
+
+        while(beamSize > 0) {
+            if(limit.reached()) {
+                exceededMax = true;
+                return null;
+            }
+            int expand = count();
+            if(exceededMax) {
+                return null;
+            }
+            long expandStart = System.nanoTime();
+            generate(expand);
+            stats.stopOnce(SearchStats.Phase.EXPANSION, expandStart);
+
+            nextSize = 0;
+            recent.startLayer();
+            for(int i = 0; i < expand; i++) {
+                // wide layers take a while, so the limit is also checked partway through
+                if(limit.shouldStop(i + 1)) {
+                    exceededMax = true;
+                    return null;
+                }
+                collect(i, i * 4);
+            }
+            stats.observeOpen(nextSize);
+            stats.observeClosed(recent.size());
+            if(expand < beamSize) {
+                return path(expand);
+            }
+
+            long selectStart = System.nanoTime();
+            select();
+            stats.stopOnce(SearchStats.Phase.QUEUE, selectStart);
+        }
+        return null;
+    }
+
+    /**
+     * @param limit deadline and cancellation, checked alongside the node limit
+     */
+    public void setLimit(SearchLimit limit) {
+        this.limit = limit;
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
+
+    public boolean getExceedMax() {
+        return exceededMax;
+    }
+
+    /**
+     * Count the expansions of the current layer, which stops at the goal or
+     * as soon as the node limit is exceeded
+     * @return the number of beam states whose successors are needed
+     */
+    private int count() {
+        for(int i = 0; i < beamSize; i++) {
+            if(nodesVisited > maxNodes) {
+                exceededMax = true;
+                return i;
+            }
+            nodesVisited++;
+            stats.expanded();
+            if(beam[i] == size.getGoalState()) {
+                return i;
+            }
+        }
+        return beamSize;
+    }
+
+    /**
+     * Fill the successor slots of the first n beam states
+     */
+    private void generate(int n) {
+        if(children.length < n * 4) {
+            children = new long[n * 4];
+            childH = new int[n * 4];
+        }
+        if(n < PARALLEL_THRESHOLD) {
+            generate(0, n);
+            return;
+        }
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(c -> generate(c * CHUNK, Math.min(n, (c + 1) * CHUNK)));
+    }
+
+    private void generate(int from, int to) {
+        for(int i = from; i < to; i++) {
+            long s = beam[i];
+            int blank = size.blank(s);
+            for(int direction = 0; direction < 4; direction++) {
+                int slot = i * 4 + direction;
+                int target = size.target(blank, direction);
+                if(target < 0) {
+                    children[slot] = NONE;
+                    continue;
+                }
+                long child = size.move(s, direction);
+                children[slot] = child;
+                childH[slot] = heuristic.update(size, beamH[i], child, BoardSize.tileAt(s, target), target, blank);
+            }
+        }
+    }
+
+    /**
+     * Make the start's successors that are new the next layer
+     */
+    private void collectStart(long start) {
+        nextSize = 0;
+        recent.startLayer();
+        int h = heuristic.evaluate(size, start);
+        int blank = size.blank(start);
+        for(int direction : size.legalMoves(blank)) {
+            int target = size.target(blank, direction);
+            long child = size.move(start, direction);
+            add(0, child, heuristic.update(size, h, child, BoardSize.tileAt(start, target), target, blank));
+        }
+    }
+
+    /**
+     * Add the successors of one beam state that are not duplicates to the next layer
+     * @param parent index of the beam state
+     * @param slot first of its four successor slots
+     */
+    private void collect(int parent, int slot) {
+        int generated = 0;
+        for(int direction = 0; direction < 4; direction++) {
+            long child = children[slot + direction];
+            if(child == NONE) {
+                continue;
+            }
+            generated++;
+            add(parent, child, childH[slot + direction]);
+        }
+        stats.generated(generated);
+    }
+
+    private void add(int parent, long child, int h) {
+        if(!recent.offer(child)) {
+            stats.duplicate();
+            return;
+        }
+        if(nextSize == next.length) {
+            next = Arrays.copyOf(next, nextSize << 1);
+            nextH = Arrays.copyOf(nextH, nextSize << 1);
+            nextParent = Arrays.copyOf(nextParent, nextSize << 1);
+        }
+        next[nextSize] = child;
+        nextH[nextSize] = h;
+        nextParent[nextSize] = parent;
+        nextSize++;
+    }
+
+    /**
+     * Make the k best states of the next layer the beam, best first. Ties on h
+     * go to the state added last.
+     */
+    private void select() {
+        if(keys.length < nextSize) {
+            keys = new long[next.length];
+        }
+        for(int i = 0; i < nextSize; i++) {
+            keys[i] = (long) nextH[i] << 32 | (0xFFFFFFFFL - i);
+        }
+        int kept = TopK.smallest(keys, nextSize, width);
+        ensureBeam(kept);
+        for(int j = 0; j < kept; j++) {
+            int i = (int) (0xFFFFFFFFL - (keys[j] & 0xFFFFFFFFL));
+            beam[j] = next[i];
+            beamH[j] = nextH[i];
+            beamParent[j] = nextParent[i];
+        }
+        beamSize = kept;
+        keepBeam();
+    }
+
+    /**
+     * Make the whole next layer the beam, in the order it was added
+     */
+    private void swap() {
+        ensureBeam(nextSize);
+        System.arraycopy(next, 0, beam, 0, nextSize);
+        System.arraycopy(nextH, 0, beamH, 0, nextSize);
+        System.arraycopy(nextParent, 0, beamParent, 0, nextSize);
+        beamSize = nextSize;
+        keepBeam();
+    }
+
+    /**
+     * Record the new beam for duplicate checks and for rebuilding the path
+     */
+    private void keepBeam() {
+        recent.keep(beam, beamSize);
+        layers.add(Arrays.copyOf(beam, beamSize));
+        layerParents.add(Arrays.copyOf(beamParent, beamSize));
+    }
+
+    private void ensureBeam(int n) {
+        if(beam.length < n) {
+            beam = new long[n];
+            beamH = new int[n];
+            beamParent = new int[n];
+        }
+    }
+
+    /**
+     * Follow the parent links back through the kept beams
+     * @param goal index of the goal in the last beam
+     */
+    private int[] path(int goal) {
+        int[] moves = new int[layers.size() - 1];
+        int index = goal;
+        for(int layer = moves.length; layer > 0; layer--) {
+            long state = layers.get(layer)[index];
+            index = layerParents.get(layer)[index];
+            moves[layer - 1] = size.directionBetween(layers.get(layer - 1)[index], state);
+        }
+        return moves;
+    }
+}
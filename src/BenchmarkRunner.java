@@ -0,0 +1,432 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Times whole solves of a fixed corpus of instances, to compare algorithms
+ * and to catch performance regressions from one build to the next.
+ *
+ * The corpus is a seeded set of random walks from the goal, so the same
+ * options always give the same instances. Each algorithm first solves the
+ * whole corpus a few times to warm up the JIT, then solves it again for the
+ * measured iterations; each solve is one latency sample. A result gives the
+ * p50, p99 and maximum latency, the nodes expanded per second over the
+ * measured solves, and the peak heap in use while they ran (garbage not yet
+ * collected included). Results are printed as a table and can be written as
+ * CSV or JSON; a CSV written earlier can be given as the baseline to compare
+ * against.
+ *
+ * Options are key=value pairs, for the benchmark command and -benchmark:
+ *   size=3 instances=20 scramble=60 seed=1234 warmup=2 iterations=5
+ *   maxNodes=N algorithms=A-star:h4,IDA-star:h4,beam:100
+ *   csv=results.csv json=results.json baseline=old.csv tolerance=0.1
+ */
+public final class BenchmarkRunner {
+    public static final String DEFAULT_ALGORITHMS = "A-star:h1,A-star:h2,A-star:h4,IDA-star:h4,bidirectional:h4,"
+            + "SMA-star:h4,beam:100";
+    public static final int DEFAULT_INSTANCES = 20;
+    public static final int DEFAULT_SCRAMBLE = 60;
+    public static final long DEFAULT_SEED = 1234;
+    public static final int DEFAULT_WARMUP = 2;
+    public static final int DEFAULT_ITERATIONS = 5;
+    /** relative slowdown over the baseline reported as a regression */
+    public static final double DEFAULT_TOLERANCE = 0.10;
+
+    private static final String CSV_HEADER = "algorithm,argument,instances,solved,samples,p50_ms,p99_ms,max_ms,"
+            + "mean_ms,nodes_per_second,peak_heap_bytes";
+
+    private final List<String[]> algorithms;
+    private final List<Board> corpus;
+    private int warmup = DEFAULT_WARMUP;
+    private int iterations = DEFAULT_ITERATIONS;
+    private int maxNodes = Integer.MAX_VALUE;
+
+    /**
+     * @param algorithms algorithm and argument pairs, as for the solve command
+     * @param corpus boards to solve; they are not modified
+     */
+    public BenchmarkRunner(List<String[]> algorithms, List<Board> corpus) {
+        for(String[] a : algorithms) {
+            if(Puzzle.algorithmLabel(a[0]) == null) {
+                throw new IllegalArgumentException("Search algorithm not recognized: " + a[0]);
+            }
+        }
+        if(corpus.isEmpty()) {
+            throw new IllegalArgumentException("The corpus has no instances.");
+        }
+        this.algorithms = algorithms;
+        this.corpus = corpus;
+    }
+
+    /**
+     * Random walks from the goal that never undo their last move
+     * @param size board size
+     * @param instances number of boards
+     * @param scramble moves in each walk
+     * @param seed seed of the walks
+     */
+    public static List<Board> corpus(BoardSize size, int instances, int scramble, long seed) {
+        Random random = new Random(seed);
+        List<Board> boards = new ArrayList<>();
+        for(int i = 0; i < instances; i++) {
+            Board b = Board.goal(size);
+            int last = -1;
+            for(int moved = 0; moved < scramble; ) {
+                int direction = random.nextInt(4);
+                String name = BoardSize.DIRECTION_NAMES[direction];
+                if(direction != BoardSize.opposite(last) && b.isLegalMove(name)) {
+                    b = b.move(name);
+                    last = direction;
+                    moved++;
+                }
+            }
+            boards.add(copy(b));
+        }
+        return boards;
+    }
+
+    /**
+     * @param algorithms comma-separated algorithm:argument pairs, e.g. "A-star:h4,beam:100"
+     */
+    public static List<String[]> parseAlgorithms(String algorithms) {
+        List<String[]> pairs = new ArrayList<>();
+        for(String spec : algorithms.split(",")) {
+            if(spec.isEmpty()) {
+                continue;
+            }
+            int colon = spec.indexOf(':');
+            pairs.add(colon < 0 ? new String[] {spec, null}
+                    : new String[] {spec.substring(0, colon), spec.substring(colon + 1)});
+        }
+        return pairs;
+    }
+
+    public void setWarmup(int warmup) {
+        this.warmup = warmup;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = Math.max(1, iterations);
+    }
+
+    public void setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Benchmark every algorithm in turn
+     * @param progress receives a line as each algorithm starts, or null
+     * @return one result per algorithm, in order
+     */
+    public List<Result> run(PrintStream progress) {
+        List<Result> results = new ArrayList<>();
+        for(String[] a : algorithms) {
+            if(progress != null) {
+                progress.println("Benchmarking " + label(a[0], a[1]) + "....");
+            }
+            results.add(run(a[0], a[1]));
+        }
+        return results;
+    }
+
+    private Result run(String algorithm, String argument) {
+        // no solution cache, so every solve searches
+        Puzzle puzzle = new Puzzle(new Board(), maxNodes);
+        for(int i = 0; i < warmup; i++) {
+            for(Board b : corpus) {
+                solve(puzzle, algorithm, argument, b);
+            }
+        }
+
+        System.gc();
+        List<MemoryPoolMXBean> heap = heapPools();
+        for(MemoryPoolMXBean pool : heap) {
+            pool.resetPeakUsage();
+        }
+        long[] nanos = new long[iterations * corpus.size()];
+        long expanded = 0;
+        int solved = 0;
+        int n = 0;
+        for(int i = 0; i < iterations; i++) {
+            for(Board b : corpus) {
+                boolean found = solve(puzzle, algorithm, argument, b);
+                SearchStats stats = puzzle.getStats();
+                nanos[n++] = stats.getTotalNanos();
+                expanded += stats.getExpanded();
+                if(found && i == 0) {
+                    solved++;
+                }
+            }
+        }
+        long peak = 0;
+        for(MemoryPoolMXBean pool : heap) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return new Result(algorithm, argument, corpus.size(), solved, nanos, expanded, peak);
+    }
+
+    private static boolean solve(Puzzle puzzle, String algorithm, String argument, Board board) {
+        puzzle.setInteractiveBoard(copy(board));
+        return puzzle.solve(algorithm, argument) != null;
+    }
+
+    private static Board copy(Board b) {
+        return b.getSize().isPacked() ? new Board(b.getSize(), b.getState()) : new Board(b.getSize(), b.tileArray());
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    private static String label(String algorithm, String argument) {
+        return argument == null ? algorithm : algorithm + " " + argument;
+    }
+
+    /**
+     * @return the results as a table, one row per algorithm
+     */
+    public static String table(List<Result> results) {
+        StringBuilder sb = new StringBuilder();
+        String format = "%-20s %9s %10s %10s %10s %14s %10s%n";
+        sb.append(String.format(format, "Algorithm", "Solved", "p50 ms", "p99 ms", "max ms", "Nodes/s", "Peak MB"));
+        for(Result r : results) {
+            sb.append(String.format(Locale.ROOT, format, label(r.algorithm, r.argument), r.solved + "/" + r.instances,
+                    String.format(Locale.ROOT, "%.3f", r.percentile(0.50) / 1e6),
+                    String.format(Locale.ROOT, "%.3f", r.percentile(0.99) / 1e6),
+                    String.format(Locale.ROOT, "%.3f", r.max() / 1e6),
+                    String.format(Locale.ROOT, "%.0f", r.getNodesPerSecond()),
+                    String.format(Locale.ROOT, "%.1f", r.peakHeap / 1e6)));
+        }
+        return sb.toString();
+    }
+
+    public static void writeCsv(List<Result> results, Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(CSV_HEADER);
+        for(Result r : results) {
+            lines.add(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.4f,%.4f,%.4f,%.4f,%.1f,%d", r.algorithm,
+                    r.argument == null ? "" : r.argument, r.instances, r.solved, r.nanos.length,
+                    r.percentile(0.50) / 1e6, r.percentile(0.99) / 1e6, r.max() / 1e6, r.mean() / 1e6,
+                    r.getNodesPerSecond(), r.peakHeap));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    public static void writeJson(List<Result> results, Path file) throws IOException {
+        StringBuilder sb = new StringBuilder("[\n");
+        for(int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            sb.append(String.format(Locale.ROOT, "  {\"algorithm\": \"%s\", \"argument\": %s, \"instances\": %d, "
+                    + "\"solved\": %d, \"samples\": %d, \"p50Ms\": %.4f, \"p99Ms\": %.4f, \"maxMs\": %.4f, "
+                    + "\"meanMs\": %.4f, \"nodesPerSecond\": %.1f, \"peakHeapBytes\": %d}",
+                    r.algorithm, r.argument == null ? "null" : "\"" + r.argument + "\"", r.instances, r.solved,
+                    r.nanos.length, r.percentile(0.50) / 1e6, r.percentile(0.99) / 1e6, r.max() / 1e6,
+                    r.mean() / 1e6, r.getNodesPerSecond(), r.peakHeap));
+            sb.append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        sb.append("]\n");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compare results with a CSV written by an earlier run. An algorithm
+     * regresses if its median latency grew, or its node rate fell, by more
+     * than the tolerance.
+     * @param results this run
+     * @param baseline CSV file from {@link #writeCsv}
+     * @param tolerance relative change allowed, e.g. 0.1
+     * @param out receives one line per algorithm found in both
+     * @return the number of algorithms that regressed
+     */
+    public static int compare(List<Result> results, Path baseline, double tolerance, PrintStream out)
+            throws IOException {
+        List<String> lines = Files.readAllLines(baseline, StandardCharsets.UTF_8);
+        if(lines.isEmpty()) {
+            throw new IOException("Baseline " + baseline + " is empty.");
+        }
+        List<String> columns = Arrays.asList(lines.get(0).split(",", -1));
+        int p50Column = columns.indexOf("p50_ms");
+        int rateColumn = columns.indexOf("nodes_per_second");
+        if(p50Column < 0 || rateColumn < 0) {
+            throw new IOException("Baseline " + baseline + " is not a benchmark CSV.");
+        }
+        Map<String, String[]> rows = new HashMap<>();
+        for(String line : lines.subList(1, lines.size())) {
+            String[] row = line.split(",", -1);
+            if(row.length == columns.size()) {
+                rows.put(label(row[0], row[1].isEmpty() ? null : row[1]), row);
+            }
+        }
+
+        int regressions = 0;
+        for(Result r : results) {
+            String name = label(r.algorithm, r.argument);
+            String[] row = rows.get(name);
+            if(row == null) {
+                out.println(name + ": not in baseline");
+                continue;
+            }
+            double oldP50 = Double.parseDouble(row[p50Column]);
+            double oldRate = Double.parseDouble(row[rateColumn]);
+            double p50 = r.percentile(0.50) / 1e6;
+            double rate = r.getNodesPerSecond();
+            boolean slower = p50 > oldP50 * (1 + tolerance) || rate < oldRate * (1 - tolerance);
+            if(slower) {
+                regressions++;
+            }
+            out.println(String.format(Locale.ROOT, "%-20s p50 %.3f ms vs %.3f ms (%+.1f%%), %.0f vs %.0f nodes/s (%+.1f%%)%s",
+                    name, p50, oldP50, change(p50, oldP50), rate, oldRate, change(rate, oldRate),
+                    slower ? "  REGRESSION" : ""));
+        }
+        return regressions;
+    }
+
+    private static double change(double now, double before) {
+        return before == 0 ? 0 : 100 * (now - before) / before;
+    }
+
+    /**
+     * Handle the benchmark command and -benchmark: build the corpus and runner
+     * from key=value options, run them, print the table and write or compare
+     * the files named
+     * @return the number of regressions against the baseline, or 0 without one
+     */
+    public static int run(String[] options, PrintStream out) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        for(String option : options) {
+            int equals = option.indexOf('=');
+            if(equals < 0) {
+                throw new IllegalArgumentException("Options are key=value pairs, not " + option);
+            }
+            values.put(option.substring(0, equals), option.substring(equals + 1));
+        }
+        BoardSize size = BoardSize.of(Integer.parseInt(values.getOrDefault("size", "3")));
+        int instances = Integer.parseInt(values.getOrDefault("instances", String.valueOf(DEFAULT_INSTANCES)));
+        int scramble = Integer.parseInt(values.getOrDefault("scramble", String.valueOf(DEFAULT_SCRAMBLE)));
+        long seed = Long.parseLong(values.getOrDefault("seed", String.valueOf(DEFAULT_SEED)));
+        BenchmarkRunner runner = new BenchmarkRunner(parseAlgorithms(values.getOrDefault("algorithms",
+                DEFAULT_ALGORITHMS)), corpus(size, instances, scramble, seed));
+        runner.setWarmup(Integer.parseInt(values.getOrDefault("warmup", String.valueOf(DEFAULT_WARMUP))));
+        runner.setIterations(Integer.parseInt(values.getOrDefault("iterations", String.valueOf(DEFAULT_ITERATIONS))));
+        if(values.containsKey("maxNodes")) {
+            runner.setMaxNodes(Integer.parseInt(values.get("maxNodes")));
+        }
+
+        out.println(String.format("%d %s instances, %d random moves each (seed %d), %d warmup and %d measured "
+                + "iterations", instances, size, scramble, seed, runner.warmup, runner.iterations));
+        List<Result> results = runner.run(out);
+        out.print(table(results));
+        if(values.containsKey("csv")) {
+            writeCsv(results, Paths.get(values.get("csv")));
+            out.println("Wrote " + values.get("csv"));
+        }
+        if(values.containsKey("json")) {
+            writeJson(results, Paths.get(values.get("json")));
+            out.println("Wrote " + values.get("json"));
+        }
+        if(!values.containsKey("baseline")) {
+            return 0;
+        }
+        double tolerance = Double.parseDouble(values.getOrDefault("tolerance", String.valueOf(DEFAULT_TOLERANCE)));
+        out.println("Against " + values.get("baseline") + ":");
+        int regressions = compare(results, Paths.get(values.get("baseline")), tolerance, out);
+        out.println(regressions == 0 ? "No regressions." : regressions + " regressed.");
+        return regressions;
+    }
+
+    /**
+     * Timings of one algorithm over the corpus
+     */
+    public static final class Result {
+        private final String algorithm;
+        private final String argument;
+        private final int instances;
+        private final int solved;
+        // sorted, one per measured solve
+        private final long[] nanos;
+        private final long expanded;
+        private final long peakHeap;
+
+        Result(String algorithm, String argument, int instances, int solved, long[] nanos, long expanded,
+               long peakHeap) {
+            this.algorithm = algorithm;
+            this.argument = argument;
+            this.instances = instances;
+            this.solved = solved;
+            this.nanos = nanos.clone();
+            Arrays.sort(this.nanos);
+            this.expanded = expanded;
+            this.peakHeap = peakHeap;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public String getArgument() {
+            return argument;
+        }
+
+        /**
+         * @return instances of the corpus solved
+         */
+        public int getSolved() {
+            return solved;
+        }
+
+        /**
+         * @param p fraction between 0 and 1
+         * @return the nearest-rank percentile of the solve times, in nanoseconds
+         */
+        public long percentile(double p) {
+            int rank = (int) Math.ceil(p * nanos.length);
+            return nanos[Math.min(nanos.length - 1, Math.max(0, rank - 1))];
+        }
+
+        public long max() {
+            return nanos[nanos.length - 1];
+        }
+
+        public double mean() {
+            long total = 0;
+            for(long t : nanos) {
+                total += t;
+            }
+            return (double) total / nanos.length;
+        }
+
+        public double getNodesPerSecond() {
+            long total = 0;
+            for(long t : nanos) {
+                total += t;
+            }
+            return total == 0 ? 0 : expanded * 1e9 / total;
+        }
+
+        /**
+         * @return peak heap in use during the measured solves, in bytes
+         */
+        public long getPeakHeap() {
+            return peakHeap;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.Arrays;
+
+/**
+ * Bidirectional heuristic search that "meets in the middle" (MM).
+ *
+ * One frontier grows forward from the start using the usual distance-to-goal
+ * heuristics; the other grows backward from the goal, estimating the distance
+ * to the start with the same heuristic measured against the start's tile
+ * positions. Moves are reversible, so backward successors are ordinary moves.
+ *
+ * Nodes are ordered by pr(n) = max(f(n), 2g(n)), which keeps either side from
+ * expanding anything past the midpoint of an optimal path, and the side with
+ * the lower minimum priority is expanded next. Whenever a generated state is
+ * already known to the other side the joined path becomes a candidate U. The
+ * search stops once U is no larger than
+ * max(C, fminF, fminB, gminF + gminB + 1), where C is the smaller of the two
+ * minimum priorities; each term is a lower bound on any path not yet found,
+ * so the final U is optimal for admissible heuristics.
+ */
+public final class BidirectionalSearch {
+    private static final int NO_SOLUTION = Integer.MAX_VALUE;
+
+    private final BoardSize size;
+    private final Heuristic heuristic;
+    private final int maxNodes;
+    private SearchLimit limit = SearchLimit.NONE;
+
+    private Frontier forward;
+    private Frontier backward;
+    private int best;
+    private long meeting;
+    private int nodesVisited;
+    private boolean exceededMax;
+
+    /**
+     * @param size board size; must be packed
+     * @param heuristicType a label accepted by {@link Heuristic#fromLabel}; apart from h1
+     * the backward side uses Manhattan distance, since the other tables only measure distance to the goal
+     * @param maxNodes expansion limit across both directions
+     */
+    public BidirectionalSearch(BoardSize size, String heuristicType, int maxNodes) {
+        if(!size.isPacked()) {
+            throw new IllegalArgumentException("Bidirectional search supports boards of up to 16 cells, not " + size);
+        }
+        this.size = size;
+        this.heuristic = Heuristic.forSearch(size, heuristicType);
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Search for an optimal path from the start state to the goal
+     * @param start packed start state
+     * @return the directions to move the blank, or null if the goal is unreachable
+     * or the node limit was hit
+     */
+    public int[] solve(long start) {
+        nodesVisited = 0;
+        exceededMax = false;
+        if(!size.isSolvable(start)) {
+            return null;
+        }
+
+        long goal = size.getGoalState();
+        forward = new Frontier(null);
+        backward = new Frontier(size.cellsOf(start));
+        best = NO_SOLUTION;
+        meeting = StateTable.NO_PARENT;
+        forward.add(start, 0, forward.evaluate(start), StateTable.NO_PARENT);
+        backward.add(goal, 0, backward.evaluate(goal), StateTable.NO_PARENT);
+        if(start == goal) {
+            best = 0;
+            meeting = start;
+        }
+
+        while(!forward.open.isEmpty() && !backward.open.isEmpty()) {
+            int c = Math.min(forward.open.peekF(), backward.open.peekF());
+            int bound = Math.max(c, Math.max(forward.minF(), backward.minF()));
+            bound = Math.max(bound, forward.minG() + backward.minG() + 1);
+            if(best <= bound) {
+                break;
+            }
+            if(forward.open.peekF() == c) {
+                expand(forward, backward);
+            }
+            else {
+                expand(backward, forward);
+            }
+            if(exceededMax) {
+                return null;
+            }
+        }
+
+        if(best == NO_SOLUTION) {
+            return null;
+        }
+        return joinPath(start, goal);
+    }
+
+    /**
+     * @param limit deadline and cancellation, checked alongside the node limit
+     */
+    public void setLimit(SearchLimit limit) {
+        this.limit = limit;
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
+
+    public boolean getExceedMax() {
+        return exceededMax;
+    }
+
+    private void expand(Frontier side, Frontier other) {
+        Node node = side.poll();
+        // a cheaper path to this state was queued after this node
+        if(node.g > side.closed.getG(node.state)) {
+            return;
+        }
+        if(nodesVisited >= maxNodes || limit.shouldStop(nodesVisited)) {
+            exceededMax = true;
+            return;
+        }
+        nodesVisited++;
+
+        int childG = node.g + 1;
+        long parent = side.closed.getParent(node.state);
+        int blank = size.blank(node.state);
+        for(int direction : size.legalMoves(blank)) {
+            long child = size.move(node.state, direction);
+            if(child == parent) {
+                continue;
+            }
+            int target = size.target(blank, direction);
+            int childH = side.update(node.h, child, BoardSize.tileAt(node.state, target), target, blank);
+            if(!side.add(child, childG, childH, node.state)) {
+                continue;
+            }
+            int otherG = other.closed.getG(child);
+            if(otherG != StateTable.MISSING && childG + otherG < best) {
+                best = childG + otherG;
+                meeting = child;
+            }
+        }
+    }
+
+    /**
+     * Forward parents lead from the meeting state back to the start, backward
+     * parents lead on from it to the goal.
+     */
+    private int[] joinPath(long start, long goal) {
+        int[] path = new int[best];
+        int i = forward.closed.getG(meeting);
+        for(long s = meeting; s != start; ) {
+            long parent = forward.closed.getParent(s);
+            path[--i] = size.directionBetween(parent, s);
+            s = parent;
+        }
+        i = forward.closed.getG(meeting);
+        for(long s = meeting; s != goal; ) {
+            long next = backward.closed.getParent(s);
+            path[i++] = size.directionBetween(s, next);
+            s = next;
+        }
+        return path;
+    }
+
+    private static final class Node {
+        final long state;
+        final int g;
+        final int h;
+
+        Node(long state, int g, int h) {
+            this.state = state;
+            this.g = g;
+            this.h = h;
+        }
+    }
+
+    /**
+     * One direction of the search: its open list ordered by priority, its table
+     * of best g values and parents, and counts of the open nodes by f and by g so
+     * that the smallest of each is known without scanning the open list.
+     * Superseded nodes stay counted until they are polled, which can only make
+     * the minimums, and so the stopping bound, smaller.
+     */
+    private final class Frontier {
+        /** cell of each tile in the state this side is heading for; null for the goal */
+        final int[] targetCell;
+        final BucketQueue<Node> open = new BucketQueue<>();
+        final StateTable closed = new StateTable();
+        int[] fCount = new int[64];
+        int[] gCount = new int[64];
+        int fMin;
+        int gMin;
+
+        Frontier(int[] targetCell) {
+            this.targetCell = targetCell;
+        }
+
+        int evaluate(long state) {
+            if(targetCell == null) {
+                return heuristic.evaluate(size, state);
+            }
+            return heuristic == Heuristic.MISPLACED ? size.misplacedTiles(state, targetCell)
+                    : size.manhattan(state, targetCell);
+        }
+
+        /**
+         * Heuristic value of a child from its parent's, as in {@link Heuristic#update}
+         */
+        int update(int h, long child, int tile, int from, int to) {
+            if(targetCell == null) {
+                return heuristic.update(size, h, child, tile, from, to);
+            }
+            int home = targetCell[tile];
+            if(heuristic == Heuristic.MISPLACED) {
+                return h + (to == home ? 0 : 1) - (from == home ? 0 : 1);
+            }
+            return h + size.distance(to, home) - size.distance(from, home);
+        }
+
+        /**
+         * @return true if the state was new or reached more cheaply, and was queued
+         */
+        boolean add(long state, int g, int h, long parent) {
+            if(!closed.offer(state, g, parent)) {
+                return false;
+            }
+            int f = g + h;
+            open.push(new Node(state, g, h), Math.max(f, 2 * g), g, h);
+            fCount = increment(fCount, f);
+            gCount = increment(gCount, g);
+            fMin = Math.min(fMin, f);
+            gMin = Math.min(gMin, g);
+            return true;
+        }
+
+        Node poll() {
+            Node node = open.poll();
+            fCount[node.g + node.h]--;
+            gCount[node.g]--;
+            return node;
+        }
+
+        int minF() {
+            while(fMin < fCount.length && fCount[fMin] == 0) {
+                fMin++;
+            }
+            return fMin;
+        }
+
+        int minG() {
+            while(gMin < gCount.length && gCount[gMin] == 0) {
+                gMin++;
+            }
+            return gMin;
+        }
+
+        private int[] increment(int[] counts, int value) {
+            if(value >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(value + 1, counts.length << 1));
+            }
+            counts[value]++;
+            return counts;
+        }
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -5,36 +6,110 @@ public class Board {
     private int h;
     private int g;
     private int f;
-    private char[][] boardState;
+    private BoardSize size;
+    // packed tiles when size.isPacked(), otherwise one byte per cell in tiles
+    private long state;
+    private byte[] tiles;
+    private int wideBlank;
     private Board parent;
     private String directionMoved;
     private int blankRow;
     private int blankColumn;
     private String heuristicType;
+    // resolved from heuristicType once per search; children inherit it
+    private Heuristic heuristic;
     private String algorithmType;
     public static final char[][] GOAL = {{'b', '1', '2'}, {'3', '4', '5'}, {'6', '7', '8'}};
+    public static final long GOAL_STATE = BoardSize.EIGHT_PUZZLE.getGoalState();
 
     public Board(char[][] state) {
-        this.boardState = state;
+        this(BoardSize.of(state.length), toTiles(state));
+    }
+
+    /**
+     * @param state packed 3x3 board
+     */
+    public Board(long state) {
+        this(BoardSize.EIGHT_PUZZLE, state);
+    }
+
+    /**
+     * @param size board size; must be packed
+     * @param state packed board
+     */
+    public Board(BoardSize size, long state) {
+        this.size = size;
+        this.state = state;
         this.f = 0;
         this.h = 0;
         this.g = 0;
     }
 
-    public Board() {
-        this.boardState = new char[3][3];
+    /**
+     * @param size board size
+     * @param tiles tile number per cell, row-major; not copied
+     */
+    public Board(BoardSize size, byte[] tiles) {
+        this.size = size;
+        setTiles(tiles);
         this.f = 0;
         this.h = 0;
         this.g = 0;
     }
 
+    public Board() {
+        this(GOAL_STATE);
+    }
+
     public Board(char[][] state, int g, Board parent) {
-        this.boardState = state;
-        setHeuristicType(parent.getHeuristicType());
+        this(BoardSize.of(state.length), toTiles(state));
+        initChild(g, parent);
+        setH(computeHeuristic());
+        setF(g, h);
+    }
+
+    public Board(long state, int g, Board parent) {
+        this(state, g, 0, parent);
+        setH(computeHeuristic());
+        setF(g, h);
+    }
+
+    private Board(long state, int g, int h, Board parent) {
+        this.size = parent.size;
+        this.state = state;
+        initChild(g, parent);
+        this.h = h;
+        setF(g, h);
+    }
+
+    private Board(byte[] tiles, int blank, int g, int h, Board parent) {
+        this.size = parent.size;
+        this.tiles = tiles;
+        this.wideBlank = blank;
+        initChild(g, parent);
+        this.h = h;
+        setF(g, h);
+    }
+
+    /**
+     * @return a board in the goal configuration
+     */
+    public static Board goal(BoardSize size) {
+        if(size.isPacked()) {
+            return new Board(size, size.getGoalState());
+        }
+        byte[] tiles = new byte[size.getCells()];
+        for(int cell = 0; cell < tiles.length; cell++) {
+            tiles[cell] = (byte) cell;
+        }
+        return new Board(size, tiles);
+    }
+
+    private void initChild(int g, Board parent) {
+        this.heuristicType = parent.heuristicType;
+        this.heuristic = parent.heuristic;
         setAlgorithmType(parent.getAlgorithmType());
         this.g = g;
-        this.h = computeHeuristic();
-        setF(g, h);
         this.parent = parent;
         directionMoved = null;
     }
@@ -47,8 +122,17 @@ public class Board {
         return this.directionMoved;
     }
 
+    /**
+     * Choose the heuristic for this board and the children generated from it,
+     * and compute h for this board
+     * @param heuristicType "h1", "h2", or "h3"/"pdb"; anything else means h2
+     */
     public void setHeuristicType(String heuristicType) {
         this.heuristicType = heuristicType;
+        this.heuristic = heuristicType == null ? null : Heuristic.forSearch(size, heuristicType);
+        if(heuristic != null) {
+            this.h = computeHeuristic();
+        }
     }
 
     public String getHeuristicType() {
@@ -65,7 +149,8 @@ public class Board {
 
     public void clearData() {
         this.f = 0;
-        this.h = 0;
+        // children update h from this board's value, so keep it in step with the tiles
+        this.h = heuristic == null ? 0 : computeHeuristic();
         this.g = 0;
         this.parent = null;
     }
@@ -80,25 +165,110 @@ public class Board {
         }
 
         Board board = (Board) o;
-        return this.hashCode() == board.hashCode();
+        if(this.size != board.size) {
+            return false;
+        }
+        return tiles == null ? this.state == board.state : Arrays.equals(this.tiles, board.tiles);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepToString(this.boardState).hashCode();
+        return tiles == null ? Long.hashCode(this.state) : Arrays.hashCode(this.tiles);
+    }
+
+    public BoardSize getSize() {
+        return this.size;
+    }
+
+    /**
+     * @return the packed representation of this board (see {@link BoardSize});
+     * only meaningful when getSize().isPacked()
+     */
+    public long getState() {
+        return this.state;
+    }
+
+    /**
+     * @return the tile number on a cell, 0 for the blank
+     */
+    public int tileAt(int cell) {
+        return tiles == null ? BoardSize.tileAt(state, cell) : tiles[cell];
+    }
+
+    /**
+     * @return the cell holding the blank
+     */
+    public int getBlank() {
+        return tiles == null ? size.blank(state) : wideBlank;
+    }
+
+    /**
+     * @return the tiles of an unpacked board; shared, not copied, and null for packed boards
+     */
+    byte[] tileArray() {
+        return tiles;
+    }
+
+    /**
+     * @return a copy of the tile numbers, one per cell in row-major order
+     */
+    public byte[] getTiles() {
+        return tiles == null ? size.unpack(state) : tiles.clone();
+    }
+
+    public boolean isGoal() {
+        if(tiles == null) {
+            return state == size.getGoalState();
+        }
+        for(int cell = 0; cell < tiles.length; cell++) {
+            if(tiles[cell] != cell) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isSolvable() {
+        return size.isSolvable(getTiles());
+    }
+
+    /**
+     * @return a copy of the board as a character grid
+     */
+    public char[][] getBoardState() {
+        int n = size.getDimension();
+        char[][] grid = new char[n][n];
+        for(int cell = 0; cell < size.getCells(); cell++) {
+            grid[cell / n][cell % n] = BoardSize.symbol(tileAt(cell));
+        }
+        return grid;
+    }
+
+    /**
+     * @return the board in setState syntax, one token per row
+     */
+    public String getStateString() {
+        int n = size.getDimension();
+        StringBuilder sb = new StringBuilder(size.getCells() + n);
+        for(int cell = 0; cell < size.getCells(); cell++) {
+            if(cell > 0 && cell % n == 0) {
+                sb.append(' ');
+            }
+            sb.append(BoardSize.symbol(tileAt(cell)));
+        }
+        return sb.toString();
     }
 
     public Board getParent() {
         return this.parent;
     }
 
+    /**
+     * Evaluate the board's heuristic from scratch
+     * @return estimated moves to the goal
+     */
     public int computeHeuristic() {
-        if(heuristicType.equals("h1")) {
-            return this.goalOffset();
-        }
-        else {
-            return this.computeSumOfManhattan();
-        }
+        return evaluate(heuristic);
     }
 
     /**
@@ -106,15 +276,7 @@ public class Board {
      * @return the number of tiles out of place
      */
     public int goalOffset() {
-        int offset = 0;
-        for(int i = 0; i < 3; i++) {
-            for(int j = 0; j < 3; j++) {
-                if(boardState[i][j] != GOAL[i][j] && boardState[i][j] != 'b') {
-                    offset++;
-                }
-            }
-        }
-        return offset;
+        return evaluate(Heuristic.MISPLACED);
     }
 
     /**
@@ -122,16 +284,20 @@ public class Board {
      * @return manhattan distance
      */
     public int computeSumOfManhattan() {
-        int totalSum = 0;
-        for(int i = 0; i < 3; i++) {
-            for(int j = 0; j < 3; j++) {
-                char currentChar = boardState[i][j];
-                if(currentChar != 'b') {
-                    totalSum += computeManhattanDistance(currentChar, i, j);
-                }
-            }
-        }
-        return totalSum;
+        return evaluate(Heuristic.MANHATTAN);
+    }
+
+    /**
+     * Heuristic h3: sum of the additive pattern database costs. Boards too large
+     * to pack have no pattern database and fall back to h2.
+     * @return pattern database estimate
+     */
+    public int patternDatabaseCost() {
+        return evaluate(Heuristic.forSearch(size, "h3"));
+    }
+
+    private int evaluate(Heuristic kind) {
+        return tiles == null ? kind.evaluate(size, state) : kind.evaluate(size, tiles);
     }
 
     /**
@@ -153,14 +319,8 @@ public class Board {
      * @return
      */
     public int getX(char num) {
-        for(int i = 0; i < 3; i++) {
-            for(int j = 0 ; j < 3; j++) {
-                if(GOAL[i][j] == num) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+        int tile = BoardSize.tile(num);
+        return tile < 0 || tile >= size.getCells() ? -1 : size.goalCell(tile) / size.getDimension();
     }
 
     /**
@@ -169,38 +329,53 @@ public class Board {
      * @return
      */
     public int getY(char num) {
-        for(int i = 0; i < 3; i++) {
-            for(int j = 0 ; j < 3; j++) {
-                if(GOAL[i][j] == num) {
-                    return j;
-                }
-            }
-        }
-        return -1;
+        int tile = BoardSize.tile(num);
+        return tile < 0 || tile >= size.getCells() ? -1 : size.goalCell(tile) % size.getDimension();
     }
 
     /**
-     * Given a string representing the board state, create a
-     * 2-D array representation of the board.
+     * Given a string representing the board state (one token per row, see
+     * {@link BoardSize#parse(String)}), replace this board's tiles. The number
+     * of rows decides the board size.
      * @param state string representation of the board
+     * @throws IllegalArgumentException if the string is not a valid board
      */
     public void setState(String state) {
-        String stateNoSpaces = state.replace(" ", "");
-        char[] characters = stateNoSpaces.toCharArray();
-
-        int currentCharacterIndex = 0;
-        for(int r = 0; r < 3; r++) {
-            for(int c = 0; c < 3; c++) {
-                this.boardState[r][c] = characters[currentCharacterIndex];
-                if(this.boardState[r][c] == 'b') {
-                    blankRow = r;
-                    blankColumn = c;
+        byte[] parsed = BoardSize.parse(state);
+        this.size = BoardSize.of((int) Math.round(Math.sqrt(parsed.length)));
+        setTiles(parsed);
+        findBlank();
+        if(heuristicType != null) {
+            setHeuristicType(heuristicType);
+        }
+    }
+
+    private void setTiles(byte[] cells) {
+        if(size.isPacked()) {
+            this.state = size.pack(cells);
+            this.tiles = null;
+        }
+        else {
+            this.tiles = cells;
+            for(int cell = 0; cell < cells.length; cell++) {
+                if(cells[cell] == 0) {
+                    this.wideBlank = cell;
                 }
-                currentCharacterIndex++;
             }
         }
     }
 
+    private static byte[] toTiles(char[][] grid) {
+        int n = grid.length;
+        byte[] cells = new byte[n * n];
+        for(int r = 0; r < n; r++) {
+            for(int c = 0; c < n; c++) {
+                cells[r * n + c] = (byte) BoardSize.tile(grid[r][c]);
+            }
+        }
+        return cells;
+    }
+
     public int getF() {
         return this.f;
     }
@@ -229,14 +404,9 @@ public class Board {
      * Locate and set the coordinates of the blank tile
      */
     public void findBlank() {
-        for(int i = 0; i < 3; i++) {
-            for(int j = 0; j < 3; j++) {
-                if(boardState[i][j] == 'b') {
-                    blankRow = i;
-                    blankColumn = j;
-                }
-            }
-        }
+        int blank = getBlank();
+        blankRow = blank / size.getDimension();
+        blankColumn = blank % size.getDimension();
     }
 
     /**
@@ -244,32 +414,18 @@ public class Board {
      * @return a list of valid boards
      */
     public ArrayList<Board> getValidChildren() {
-        ArrayList<Board> children = new ArrayList<>();
-        if(this.isLegalMove("up")) {
-            children.add(this.moveUp());
-        }
-
-        if(this.isLegalMove("down")) {
-            children.add(this.moveDown());
-        }
-
-        if(this.isLegalMove("left")) {
-            children.add(this.moveLeft());
-        }
-
-        if(this.isLegalMove("right")) {
-            children.add(this.moveRight());
+        int[] legal = size.legalMoves(getBlank());
+        ArrayList<Board> children = new ArrayList<>(legal.length);
+        for(int direction : legal) {
+            children.add(child(direction));
         }
-
         return children;
     }
 
     public char[][] copyArray(char[][] state) {
-        char[][] retVal = new char[3][3];
-        for(int i = 0; i < 3; i++) {
-            for(int j = 0; j < 3; j++) {
-                retVal[i][j] = state[i][j];
-            }
+        char[][] retVal = new char[state.length][];
+        for(int i = 0; i < state.length; i++) {
+            retVal[i] = state[i].clone();
         }
         return retVal;
     }
@@ -310,91 +466,56 @@ public class Board {
     }
 
     public Board moveUp() {
-        findBlank();
-        char[][] boardCopy = copyArray(boardState);
-        char temp = boardCopy[blankRow - 1][blankColumn];
-        boardCopy[blankRow - 1][blankColumn] = boardCopy[blankRow][blankColumn];
-        boardCopy[blankRow][blankColumn] = temp;
-
-        if(algorithmType == null) {
-            return new Board(boardCopy);
-        }
-        else if(algorithmType.equals("beam")) {
-            Board b = new Board(boardCopy, 0, this);
-            b.setDirectionMoved("up");
-            return b;
-        }
-        else {
-            Board b = new Board(boardCopy, this.g + 1, this);
-            b.setDirectionMoved("up");
-            return b;
-        }
+        return child(BoardSize.UP);
     }
 
     public Board moveDown() {
-        findBlank();
-        char[][] boardCopy = copyArray(boardState);
-        char temp = boardCopy[blankRow + 1][blankColumn];
-        boardCopy[blankRow + 1][blankColumn] = boardCopy[blankRow][blankColumn];
-        boardCopy[blankRow][blankColumn] = temp;
-
-        if(algorithmType == null) {
-            return new Board(boardCopy);
-        }
-        else if(algorithmType.equals("beam")) {
-            Board b = new Board(boardCopy, 0, this);
-            b.setDirectionMoved("down");
-            return b;
-        }
-        else {
-            Board b = new Board(boardCopy, this.g + 1, this);
-            b.setDirectionMoved("down");
-            return b;
-        }
+        return child(BoardSize.DOWN);
     }
 
     public Board moveLeft() {
-        findBlank();
-        char[][] boardCopy = copyArray(boardState);
-        char temp = boardCopy[blankRow][blankColumn - 1];
-        boardCopy[blankRow][blankColumn - 1] = boardCopy[blankRow][blankColumn];
-        boardCopy[blankRow][blankColumn] = temp;
-
-        if(algorithmType == null) {
-            return new Board(boardCopy);
-        }
-        else if(algorithmType.equals("beam")) {
-            Board b = new Board(boardCopy, 0, this);
-            b.setDirectionMoved("left");
-            return b;
-        }
-        else {
-            Board b = new Board(boardCopy, this.g + 1, this);
-            b.setDirectionMoved("left");
-            return b;
-        }
+        return child(BoardSize.LEFT);
     }
 
     public Board moveRight() {
-        findBlank();
-        char[][] boardCopy = copyArray(boardState);
-        char temp = boardCopy[blankRow][blankColumn + 1];
-        boardCopy[blankRow][blankColumn  + 1] = boardCopy[blankRow][blankColumn];
-        boardCopy[blankRow][blankColumn] = temp;
+        return child(BoardSize.RIGHT);
+    }
 
+    /**
+     * Build the successor reached by sliding the blank in the given direction.
+     * The caller is responsible for checking that the move is legal.
+     * @param direction one of the {@link BoardSize} direction constants
+     * @return the child board
+     */
+    private Board child(int direction) {
         if(algorithmType == null) {
-            return new Board(boardCopy);
+            return tiles == null ? new Board(size, size.move(state, direction)) : new Board(size, movedTiles(direction));
         }
-        else if(algorithmType.equals("beam")) {
-            Board b = new Board(boardCopy, 0, this);
-            b.setDirectionMoved("right");
-            return b;
+
+        int childG = algorithmType.equals("beam") ? 0 : this.g + 1;
+        // the tile on the target cell slides into the blank; only its cost changes
+        int blank = getBlank();
+        int target = size.target(blank, direction);
+        int tile = tileAt(target);
+        Board b;
+        if(tiles == null) {
+            long moved = size.move(state, direction);
+            b = new Board(moved, childG, heuristic.update(size, h, moved, tile, target, blank), this);
         }
         else {
-            Board b = new Board(boardCopy, this.g + 1, this);
-            b.setDirectionMoved("right");
-            return b;
+            byte[] moved = movedTiles(direction);
+            b = new Board(moved, target, childG, heuristic.update(size, h, moved, tile, target, blank), this);
         }
+        b.setDirectionMoved(BoardSize.DIRECTION_NAMES[direction]);
+        return b;
+    }
+
+    private byte[] movedTiles(int direction) {
+        int target = size.target(wideBlank, direction);
+        byte[] moved = tiles.clone();
+        moved[wideBlank] = moved[target];
+        moved[target] = 0;
+        return moved;
     }
 
     /**
@@ -403,33 +524,28 @@ public class Board {
      * @return whether or not the move is legal
      */
     public boolean isLegalMove(String direction) {
-        boolean isLegal;
-        findBlank();
-        switch(direction) {
-            case "up": isLegal = blankRow != 0;
-                break;
-            case "down": isLegal = blankRow != 2;
-                break;
-            case "left": isLegal = blankColumn != 0;
-                break;
-            case "right": isLegal = blankColumn != 2;
-                break;
-            default:isLegal = false;
-                break;
-        }
-
-        return isLegal;
+        int dir = BoardSize.direction(direction);
+        return dir >= 0 && size.target(getBlank(), dir) >= 0;
     }
 
     /**
      * Print a board to standard output
      */
     public void printBoard() {
-        for(int i = 0; i < 3; i++) {
-            for(int j = 0 ; j < 3; j++) {
-                System.out.print(boardState[i][j] + " ");
+        printBoard(System.out);
+    }
+
+    /**
+     * Print a board, one row per line
+     * @param out stream to print to
+     */
+    public void printBoard(PrintStream out) {
+        int n = size.getDimension();
+        for(int i = 0; i < n; i++) {
+            for(int j = 0 ; j < n; j++) {
+                out.print(BoardSize.symbol(tileAt(i * n + j)) + " ");
             }
-            System.out.println();
+            out.println();
         }
     }
 }
@@ -0,0 +1,431 @@
+/**
+ * Geometry and state encoding for an N x N sliding puzzle.
+ *
+ * Boards of up to 16 cells (8- and 15-puzzle) are packed into a long: cell i
+ * (row-major) occupies bits 4i..4i+3 and holds its tile number, with 0 standing
+ * for the blank. When there are spare bits (fewer than 16 cells) the blank's cell
+ * index is repeated above the tiles so that moves never search for it; on a full
+ * 4x4 board the blank is located with a word-parallel zero-nibble scan instead.
+ * Larger boards cannot be packed and are kept as one byte per cell.
+ *
+ * Every board's goal has the blank in the top-left corner followed by the tiles
+ * in order, as in {@link Board#GOAL}. Tiles are written 1-9 and then A-Z for 10
+ * and up, with 'b' for the blank.
+ */
+public final class BoardSize {
+    public static final int MIN_DIMENSION = 2;
+    public static final int MAX_DIMENSION = 6;
+
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+    public static final String[] DIRECTION_NAMES = {"up", "down", "left", "right"};
+
+    private static final long LOW_NIBBLE_BITS = 0x1111111111111111L;
+    private static final BoardSize[] SIZES = new BoardSize[MAX_DIMENSION + 1];
+
+    static {
+        for(int n = MIN_DIMENSION; n <= MAX_DIMENSION; n++) {
+            SIZES[n] = new BoardSize(n);
+        }
+    }
+
+    public static final BoardSize EIGHT_PUZZLE = of(3);
+
+    private final int dimension;
+    private final int cells;
+    private final boolean packed;
+    private final boolean storesBlank;
+    private final int blankShift;
+    private final long tileMask;
+
+    /**
+     * moves[blank][direction] is the cell the blank slides into, or -1 when
+     * the blank sits on the edge in that direction
+     */
+    private final int[][] moves;
+    /** legal[blank] lists the legal directions in the order up, down, left, right */
+    private final int[][] legal;
+    /** goalCell[tile] is the cell the tile occupies in the goal */
+    private final int[] goalCell;
+    private final long goalState;
+    /**
+     * manhattan[tile * cells + cell] and misplaced[tile * cells + cell] are the
+     * tile's contribution to h2 and h1 when it sits on the cell; zero for the blank
+     */
+    private final byte[] manhattan;
+    private final byte[] misplaced;
+
+    private BoardSize(int n) {
+        this.dimension = n;
+        this.cells = n * n;
+        this.packed = cells <= 16;
+        this.storesBlank = cells < 16;
+        this.blankShift = 4 * cells;
+        this.tileMask = cells >= 16 ? -1L : (1L << blankShift) - 1;
+
+        moves = new int[cells][4];
+        legal = new int[cells][];
+        goalCell = new int[cells];
+        for(int cell = 0; cell < cells; cell++) {
+            int row = cell / n;
+            int column = cell % n;
+            moves[cell][UP] = row > 0 ? cell - n : -1;
+            moves[cell][DOWN] = row < n - 1 ? cell + n : -1;
+            moves[cell][LEFT] = column > 0 ? cell - 1 : -1;
+            moves[cell][RIGHT] = column < n - 1 ? cell + 1 : -1;
+
+            int count = 0;
+            for(int dir = 0; dir < 4; dir++) {
+                if(moves[cell][dir] >= 0) {
+                    count++;
+                }
+            }
+            legal[cell] = new int[count];
+            count = 0;
+            for(int dir = 0; dir < 4; dir++) {
+                if(moves[cell][dir] >= 0) {
+                    legal[cell][count++] = dir;
+                }
+            }
+            goalCell[cell] = cell;
+        }
+
+        byte[] goal = new byte[cells];
+        for(int cell = 0; cell < cells; cell++) {
+            goal[cell] = (byte) cell;
+        }
+        this.goalState = packed ? pack(goal) : -1;
+
+        manhattan = new byte[cells * cells];
+        misplaced = new byte[cells * cells];
+        for(int tile = 1; tile < cells; tile++) {
+            for(int cell = 0; cell < cells; cell++) {
+                manhattan[tile * cells + cell] = (byte) distance(cell, goalCell[tile]);
+                misplaced[tile * cells + cell] = (byte) (cell == goalCell[tile] ? 0 : 1);
+            }
+        }
+    }
+
+    /**
+     * @param n number of rows (and columns)
+     * @return the size descriptor
+     * @throws IllegalArgumentException if n is outside [MIN_DIMENSION, MAX_DIMENSION]
+     */
+    public static BoardSize of(int n) {
+        if(n < MIN_DIMENSION || n > MAX_DIMENSION) {
+            throw new IllegalArgumentException("Board dimension must be between "
+                    + MIN_DIMENSION + " and " + MAX_DIMENSION);
+        }
+        return SIZES[n];
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getCells() {
+        return cells;
+    }
+
+    /**
+     * @return whether states of this size fit in a long
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * @return the packed goal state; only meaningful when isPacked()
+     */
+    public long getGoalState() {
+        return goalState;
+    }
+
+    public int goalCell(int tile) {
+        return goalCell[tile];
+    }
+
+    /**
+     * @return the cell the blank reaches by moving in the direction, or -1
+     */
+    public int target(int blank, int direction) {
+        return moves[blank][direction];
+    }
+
+    /**
+     * @return the legal directions for a blank cell; the array must not be modified
+     */
+    public int[] legalMoves(int blank) {
+        return legal[blank];
+    }
+
+    @Override
+    public String toString() {
+        return dimension + "x" + dimension;
+    }
+
+    // ---- packed encoding ----
+
+    public long pack(byte[] tiles) {
+        long state = 0;
+        int blank = 0;
+        for(int cell = 0; cell < cells; cell++) {
+            if(tiles[cell] == 0) {
+                blank = cell;
+            }
+            state |= (long) tiles[cell] << (cell << 2);
+        }
+        return storesBlank ? state | ((long) blank << blankShift) : state;
+    }
+
+    public byte[] unpack(long state) {
+        byte[] tiles = new byte[cells];
+        for(int cell = 0; cell < cells; cell++) {
+            tiles[cell] = (byte) tileAt(state, cell);
+        }
+        return tiles;
+    }
+
+    public static int tileAt(long state, int cell) {
+        return (int) (state >>> (cell << 2)) & 0xF;
+    }
+
+    public int blank(long state) {
+        if(storesBlank) {
+            return (int) (state >>> blankShift);
+        }
+        // fold every nibble onto its lowest bit; the blank is the only nibble left at zero
+        long x = state | (state >>> 1);
+        x |= x >>> 2;
+        return Long.numberOfTrailingZeros(~x & LOW_NIBBLE_BITS) >>> 2;
+    }
+
+    /**
+     * Slide the blank one cell in the given direction
+     * @param state packed state
+     * @param direction one of UP, DOWN, LEFT, RIGHT
+     * @return the successor state, or -1 if the move is illegal
+     */
+    public long move(long state, int direction) {
+        int blank = blank(state);
+        int target = moves[blank][direction];
+        if(target < 0) {
+            return -1;
+        }
+        int shift = target << 2;
+        long tile = (state >>> shift) & 0xF;
+        long tiles = (state & tileMask & ~(0xFL << shift)) | (tile << (blank << 2));
+        return storesBlank ? tiles | ((long) target << blankShift) : tiles;
+    }
+
+    /**
+     * Heuristic h1 for a packed state
+     * @return the number of tiles out of place
+     */
+    public int misplacedTiles(long state) {
+        int offset = 0;
+        for(int cell = 0; cell < cells; cell++) {
+            offset += misplaced[tileAt(state, cell) * cells + cell];
+        }
+        return offset;
+    }
+
+    /**
+     * Heuristic h2 for a packed state
+     * @return sum of the tiles' manhattan distances to their goal cells
+     */
+    public int manhattan(long state) {
+        int totalSum = 0;
+        for(int cell = 0; cell < cells; cell++) {
+            totalSum += manhattan[tileAt(state, cell) * cells + cell];
+        }
+        return totalSum;
+    }
+
+    /**
+     * @return 1 if the tile is out of place on the cell, 0 if it is home or is the blank
+     */
+    public int misplacedCost(int tile, int cell) {
+        return misplaced[tile * cells + cell];
+    }
+
+    /**
+     * @return the tile's manhattan distance from the cell to its goal cell, 0 for the blank
+     */
+    public int manhattanCost(int tile, int cell) {
+        return manhattan[tile * cells + cell];
+    }
+
+    /**
+     * @param target packed state
+     * @return targetCell[tile], the cell each tile occupies in the target
+     */
+    public int[] cellsOf(long target) {
+        int[] cell = new int[cells];
+        for(int c = 0; c < cells; c++) {
+            cell[tileAt(target, c)] = c;
+        }
+        return cell;
+    }
+
+    /**
+     * Heuristic h1 towards an arbitrary target
+     * @param targetCell cell of each tile in the target, from cellsOf
+     * @return the number of tiles not on their target cell
+     */
+    public int misplacedTiles(long state, int[] targetCell) {
+        int offset = 0;
+        for(int cell = 0; cell < cells; cell++) {
+            int tile = tileAt(state, cell);
+            if(tile != 0 && targetCell[tile] != cell) {
+                offset++;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Heuristic h2 towards an arbitrary target
+     * @param targetCell cell of each tile in the target, from cellsOf
+     * @return sum of the tiles' manhattan distances to their target cells
+     */
+    public int manhattan(long state, int[] targetCell) {
+        int totalSum = 0;
+        for(int cell = 0; cell < cells; cell++) {
+            int tile = tileAt(state, cell);
+            if(tile != 0) {
+                totalSum += distance(cell, targetCell[tile]);
+            }
+        }
+        return totalSum;
+    }
+
+    /**
+     * @return the direction that takes one state to a neighbouring one, or -1 if they are not neighbours
+     */
+    public int directionBetween(long from, long to) {
+        for(int direction : legal[blank(from)]) {
+            if(move(from, direction) == to) {
+                return direction;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return manhattan distance between two cells
+     */
+    public int distance(int from, int to) {
+        return Math.abs(from / dimension - to / dimension) + Math.abs(from % dimension - to % dimension);
+    }
+
+    // ---- validity ----
+
+    /**
+     * Check whether the tiles can reach the goal. Horizontal moves change nothing
+     * below; a vertical move changes the inversion count by dimension - 1 and the
+     * blank row by one, so on odd widths the inversion parity is invariant and on
+     * even widths the parity of inversions plus blank row is.
+     * @param tiles tile number per cell
+     * @return true if the goal is reachable
+     */
+    public boolean isSolvable(byte[] tiles) {
+        int inversions = 0;
+        int blankRow = 0;
+        for(int i = 0; i < cells; i++) {
+            int a = tiles[i];
+            if(a == 0) {
+                blankRow = i / dimension;
+                continue;
+            }
+            for(int j = i + 1; j < cells; j++) {
+                if(tiles[j] != 0 && tiles[j] < a) {
+                    inversions++;
+                }
+            }
+        }
+        // the goal has no inversions and the blank on row 0
+        int parity = dimension % 2 == 1 ? inversions : inversions + blankRow;
+        return (parity & 1) == 0;
+    }
+
+    public boolean isSolvable(long state) {
+        return isSolvable(unpack(state));
+    }
+
+    /**
+     * Parse a board such as "724 5b6 831": one token per row, one character per
+     * tile. The number of rows decides the size.
+     * @param text state description
+     * @return tile number per cell
+     * @throws IllegalArgumentException if the text is not a complete, well-formed board
+     */
+    public static byte[] parse(String text) {
+        String[] rows = text.trim().split("\\s+");
+        int n = rows.length;
+        BoardSize size = of(n);
+        byte[] tiles = new byte[size.cells];
+        boolean[] seen = new boolean[size.cells];
+        for(int r = 0; r < n; r++) {
+            if(rows[r].length() != n) {
+                throw new IllegalArgumentException("Row " + (r + 1) + " should have " + n + " tiles");
+            }
+            for(int c = 0; c < n; c++) {
+                int tile = tile(rows[r].charAt(c));
+                if(tile < 0 || tile >= size.cells || seen[tile]) {
+                    throw new IllegalArgumentException("Unexpected tile '" + rows[r].charAt(c) + "'");
+                }
+                seen[tile] = true;
+                tiles[r * n + c] = (byte) tile;
+            }
+        }
+        return tiles;
+    }
+
+    // ---- directions and symbols ----
+
+    /**
+     * @return the direction that undoes the given one
+     */
+    public static int opposite(int direction) {
+        return direction ^ 1;
+    }
+
+    /**
+     * @param name "up", "down", "left" or "right"
+     * @return the direction constant, or -1 if the name is not recognized
+     */
+    public static int direction(String name) {
+        for(int dir = 0; dir < 4; dir++) {
+            if(DIRECTION_NAMES[dir].equals(name)) {
+                return dir;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return tile number for a symbol, or -1 if the symbol is not a tile
+     */
+    public static int tile(char symbol) {
+        if(symbol == 'b') {
+            return 0;
+        }
+        if(symbol >= '1' && symbol <= '9') {
+            return symbol - '0';
+        }
+        if(symbol >= 'A' && symbol <= 'Z') {
+            return symbol - 'A' + 10;
+        }
+        return -1;
+    }
+
+    public static char symbol(int tile) {
+        if(tile == 0) {
+            return 'b';
+        }
+        return tile < 10 ? (char) ('0' + tile) : (char) ('A' + tile - 10);
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.Arrays;
+
+/**
+ * Open list for searches whose priorities are small non-negative integers.
+ *
+ * The buckets are those of a {@link NodeQueue}: each queued item is parked in
+ * a slot and the queue orders the slot numbers, so push and poll cost the same
+ * as there, plus a slot taken from or returned to a free list.
+ *
+ * @param <T> type of the queued nodes
+ */
+public final class BucketQueue<T> {
+
+    /**
+     * How to order nodes that share the same f value.
+     */
+    public enum TieBreak {
+        /** prefer the node closest to the goal by its heuristic */
+        LOW_H("lowH"),
+        /** prefer the deepest node */
+        HIGH_G("highG"),
+        /** prefer the most recently pushed node */
+        LIFO("lifo");
+
+        private final String label;
+
+        TieBreak(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @param label "lowH", "highG" or "lifo"
+         * @return the matching policy, or null if the label is not recognized
+         */
+        public static TieBreak fromLabel(String label) {
+            for(TieBreak t : values()) {
+                if(t.label.equals(label)) {
+                    return t;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final NodeQueue queue;
+    private Object[] items = new Object[64];
+    // slots below this have been handed out since the last clear
+    private int used;
+    private int[] free = new int[64];
+    private int freeCount;
+
+    public BucketQueue() {
+        this(TieBreak.LOW_H);
+    }
+
+    public BucketQueue(TieBreak tieBreak) {
+        this.queue = new NodeQueue(tieBreak);
+    }
+
+    public TieBreak getTieBreak() {
+        return queue.getTieBreak();
+    }
+
+    /**
+     * Queue a node
+     * @param item node to queue
+     * @param f its priority; must be non-negative
+     * @param g cost so far, used by HIGH_G
+     * @param h heuristic estimate, used by LOW_H
+     */
+    public void push(T item, int f, int g, int h) {
+        int slot;
+        if(freeCount > 0) {
+            slot = free[--freeCount];
+        }
+        else {
+            if(used == items.length) {
+                items = Arrays.copyOf(items, used << 1);
+            }
+            slot = used++;
+        }
+        items[slot] = item;
+        queue.push(slot, f, g, h);
+    }
+
+    /**
+     * Remove and return a node with the lowest f, ties broken by the policy
+     * @return the node, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        int slot = queue.poll();
+        if(slot == NodeQueue.EMPTY) {
+            return null;
+        }
+        T item = (T) items[slot];
+        items[slot] = null;
+        if(freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount << 1);
+        }
+        free[freeCount++] = slot;
+        return item;
+    }
+
+    /**
+     * @return the lowest f currently queued, or -1 if the queue is empty
+     */
+    public int peekF() {
+        return queue.peekF();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Empty the queue, keeping the bucket storage for the next search. An
+     * emptied queue clears in constant time.
+     */
+    public void clear() {
+        if(!queue.isEmpty()) {
+            Arrays.fill(items, 0, used, null);
+            queue.clear();
+        }
+        used = 0;
+        freeCount = 0;
+    }
+}
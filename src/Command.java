@@ -0,0 +1,129 @@
+/**
+ * One parsed command line in commands.txt syntax.
+ */
+public final class Command {
+    public enum Type {
+        SOLVE("solve"),
+        ANYTIME("anytime"),
+        BATCH("batch"),
+        SET_STATE("setState"),
+        PRINT_STATE("printState"),
+        MOVE("move"),
+        MAX_NODES("maxNodes"),
+        MEMORY_LIMIT("memoryLimit"),
+        TIE_BREAK("tieBreak"),
+        BUILD_DATABASE("buildDatabase"),
+        EXTERNAL_BFS("externalBfs"),
+        BENCHMARK("benchmark"),
+        RANDOMIZE_STATE("randomizeState"),
+        STATS("stats"),
+        CACHE("cache"),
+        EXIT("exit"),
+        EXP_A("expA"),
+        EXP_B("expB"),
+        EXP_C("expC"),
+        EXP_D("expD"),
+        UNKNOWN("");
+
+        private static final Type[] TYPES = values();
+
+        private final String name;
+
+        Type(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the type with the given command name, or UNKNOWN
+         */
+        public static Type fromName(String name) {
+            for(Type t : TYPES) {
+                if(t != UNKNOWN && t.name.equals(name)) {
+                    return t;
+                }
+            }
+            return UNKNOWN;
+        }
+
+        /**
+         * @return true for commands that read or write files, or run the
+         * experiments, which print straight to standard output
+         */
+        public boolean isGlobal() {
+            switch(this) {
+                case BATCH:
+                case BUILD_DATABASE:
+                case EXTERNAL_BFS:
+                case BENCHMARK:
+                case EXP_A:
+                case EXP_B:
+                case EXP_C:
+                case EXP_D:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private static final String[] NO_ARGS = new String[0];
+
+    private final Type type;
+    private final String[] args;
+    private final String rest;
+
+    private Command(Type type, String[] args, String rest) {
+        this.type = type;
+        this.args = args;
+        this.rest = rest;
+    }
+
+    /**
+     * @param line a command line; surrounding whitespace is ignored
+     * @return the parsed command; blank lines and unknown names parse as UNKNOWN
+     */
+    public static Command parse(String line) {
+        String trimmed = line.trim();
+        int space = trimmed.indexOf(' ');
+        String name = space < 0 ? trimmed : trimmed.substring(0, space);
+        String rest = space < 0 ? "" : trimmed.substring(space + 1).trim();
+        String[] args = rest.isEmpty() ? NO_ARGS : rest.split(" +");
+        return new Command(Type.fromName(name), args, rest);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int argCount() {
+        return args.length;
+    }
+
+    /**
+     * @return the argument at index i after the command name, or null if there are fewer
+     */
+    public String arg(int i) {
+        return i < args.length ? args[i] : null;
+    }
+
+    /**
+     * @return everything after the command name, as setState takes its board
+     */
+    public String rest() {
+        return rest;
+    }
+
+    /**
+     * @return the command and its arguments as the main loop used to split them: name first
+     */
+    public String[] tokens() {
+        String[] tokens = new String[args.length + 1];
+        tokens[0] = type.getName();
+        System.arraycopy(args, 0, tokens, 1, args.length);
+        return tokens;
+    }
+}
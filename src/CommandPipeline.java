@@ -0,0 +1,295 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a command file in bounded memory, solving independent parts of it in
+ * parallel while printing exactly what running it line by line would print.
+ *
+ * The file is read lazily and cut into blocks. A block ends where the next
+ * setState begins, and a block that starts with setState does not depend on
+ * the board before it, so it runs on a fresh puzzle with the settings the
+ * earlier commands left behind (node and memory limits, tie-breaking and
+ * parallelism). The reader tracks those settings as it goes.
+ * Any other block continues from the puzzle the previous block finished with,
+ * and runs after it. That covers the commands before the first setState,
+ * blocks cut at the size limit, and blocks that print stats before they solve
+ * anything.
+ *
+ * Each block writes to its own buffer. The buffers are copied to the output
+ * in file order, and at most a fixed number of blocks are in flight, so memory
+ * does not grow with the file.
+ *
+ * Run line by line, a solve sees the solution cache as every earlier solve
+ * left it. A block that runs in parallel uses an overlay of the cache instead,
+ * which logs what it looked up and added. When the block's output comes up in
+ * file order, every earlier block has been merged into the cache. If each of
+ * the block's lookups would still find the same answer, its log is merged in
+ * too; otherwise the block is run again on the cache itself before its output
+ * is written. A dependent block starts only once the block before it is
+ * written, and uses the cache directly. The commands that read or write files, run the
+ * experiments or look at the shared cache wait for every earlier block and
+ * then run on the reading thread; so does exit, which stops the file.
+ */
+public final class CommandPipeline {
+    /** Commands per block; longer runs without a setState are cut into dependent blocks */
+    public static final int MAX_BLOCK = 1024;
+    private static final int READ_BUFFER = 1 << 16;
+
+    private final PrintStream sink;
+    private final SolutionCache cache;
+    private final ExecutorService workers;
+    private final int window;
+    private final ArrayDeque<Block> inFlight = new ArrayDeque<>();
+    // the processor the latest block is written with
+    private CompletableFuture<CommandProcessor> last;
+
+    // settings as of the command being read
+    private int maxNodes;
+    private BucketQueue.TieBreak tieBreak;
+    private int parallelism;
+    private long memoryLimit;
+
+    /**
+     * @param start processor holding the board and settings the file starts from
+     * @param sink where the output goes; it is flushed before the commands that print to standard output
+     * @param threads number of worker threads
+     */
+    public CommandPipeline(CommandProcessor start, PrintStream sink, int threads) {
+        this.sink = sink;
+        Puzzle p = start.getPuzzle();
+        this.cache = p.getSolutionCache();
+        this.maxNodes = p.getMaxNodes();
+        this.tieBreak = p.getTieBreak();
+        this.parallelism = p.getParallelism();
+        this.memoryLimit = p.getMemoryLimit();
+        this.last = CompletableFuture.completedFuture(start);
+        this.window = Math.max(1, threads) * 4;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "command-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Run every command in a file, or up to its first exit
+     * @return the processor the last command ran on
+     */
+    public CommandProcessor run(Path file) throws IOException {
+        try(BufferedReader reader = new BufferedReader(
+                Channels.newReader(FileChannel.open(file), StandardCharsets.UTF_8.newDecoder(), -1), READ_BUFFER)) {
+            Block block = new Block(false);
+            String line;
+            while((line = reader.readLine()) != null) {
+                Command command = Command.parse(line);
+                Command.Type type = command.getType();
+                if(type.isGlobal() || type == Command.Type.CACHE || type == Command.Type.EXIT) {
+                    submit(block);
+                    CommandProcessor processor = drain();
+                    runInline(processor, command);
+                    if(processor.isExited()) {
+                        return processor;
+                    }
+                    block = new Block(false);
+                    continue;
+                }
+                if(type == Command.Type.SET_STATE && !block.commands.isEmpty()) {
+                    submit(block);
+                    // a rejected board leaves the previous one in place
+                    block = new Block(isValidState(command.rest()));
+                }
+                else if(block.commands.size() == MAX_BLOCK) {
+                    submit(block);
+                    block = new Block(false);
+                }
+                if(type == Command.Type.STATS && !block.solved) {
+                    // reports the previous block's last search
+                    block.independent = false;
+                }
+                if(type == Command.Type.SOLVE || type == Command.Type.ANYTIME) {
+                    block.solved = true;
+                }
+                block.commands.add(command);
+                track(command);
+            }
+            submit(block);
+            return drain();
+        }
+        finally {
+            workers.shutdown();
+            sink.flush();
+        }
+    }
+
+    private static boolean isValidState(String state) {
+        try {
+            new Board().setState(state);
+            return true;
+        }
+        catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Follow the settings a fresh puzzle needs to pick up where the file is
+     */
+    private void track(Command command) {
+        try {
+            switch(command.getType()) {
+                case MAX_NODES:
+                    if(command.argCount() > 0) {
+                        maxNodes = Integer.parseInt(command.arg(0));
+                    }
+                    break;
+                case MEMORY_LIMIT:
+                    if(command.argCount() > 0) {
+                        memoryLimit = CommandProcessor.parseBytes(command.arg(0));
+                    }
+                    break;
+                case TIE_BREAK:
+                    BucketQueue.TieBreak t = command.argCount() < 1 ? null : BucketQueue.TieBreak.fromLabel(command.arg(0));
+                    if(t != null) {
+                        tieBreak = t;
+                    }
+                    break;
+                case SOLVE:
+                    if("A-star-par".equals(command.arg(0)) && command.argCount() > 2) {
+                        parallelism = Integer.parseInt(command.arg(2));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        catch (NumberFormatException e) {
+            // the processor reports it and keeps the old value
+        }
+    }
+
+    private void submit(Block block) {
+        if(block.commands.isEmpty()) {
+            return;
+        }
+        if(block.independent) {
+            block.overlay = cache == null ? null : cache.overlay();
+            CommandProcessor processor = fresh(block, block.overlay);
+            block.result = CompletableFuture.supplyAsync(() -> block.run(processor), workers);
+        }
+        else {
+            block.result = last.thenApplyAsync(block::run, workers);
+        }
+        last = block.written;
+        inFlight.add(block);
+
+        while(!inFlight.isEmpty() && (inFlight.size() > window || inFlight.peek().result.isDone())) {
+            writeNext();
+        }
+    }
+
+    /**
+     * @return a processor on a new puzzle with the settings in force where the block starts
+     */
+    private static CommandProcessor fresh(Block block, SolutionCache cache) {
+        Puzzle p = new Puzzle();
+        p.setMaxNodes(block.maxNodes);
+        p.setTieBreak(block.tieBreak);
+        p.setParallelism(block.parallelism);
+        p.setMemoryLimit(block.memoryLimit);
+        p.setSolutionCache(cache);
+        return new CommandProcessor(p, true);
+    }
+
+    private void writeNext() {
+        Block block = inFlight.remove();
+        Result r = block.result.join();
+        if(block.overlay != null) {
+            if(cache.canMerge(block.overlay)) {
+                cache.merge(block.overlay);
+            }
+            else {
+                // an earlier block cached something this one would have used
+                r = block.run(fresh(block, cache));
+            }
+        }
+        r.processor.getPuzzle().setSolutionCache(cache);
+        sink.write(r.output, 0, r.output.length);
+        block.written.complete(r.processor);
+    }
+
+    /**
+     * Wait for every block in flight and write its output
+     * @return the processor the last block finished with
+     */
+    private CommandProcessor drain() {
+        while(!inFlight.isEmpty()) {
+            writeNext();
+        }
+        return last.join();
+    }
+
+    private void runInline(CommandProcessor processor, Command command) {
+        sink.flush();
+        // the experiments and batch runs print straight to standard output
+        PrintStream out = command.getType().isGlobal() ? System.out : sink;
+        processor.execute(command, out);
+        out.println();
+        out.println();
+        out.flush();
+        last = CompletableFuture.completedFuture(processor);
+    }
+
+    /**
+     * A run of commands solved together, with the settings in force where it starts
+     */
+    private final class Block {
+        private final List<Command> commands = new ArrayList<>();
+        private final int maxNodes = CommandPipeline.this.maxNodes;
+        private final BucketQueue.TieBreak tieBreak = CommandPipeline.this.tieBreak;
+        private final int parallelism = CommandPipeline.this.parallelism;
+        private final long memoryLimit = CommandPipeline.this.memoryLimit;
+        private boolean independent;
+        private boolean solved;
+        private SolutionCache overlay;
+        private CompletableFuture<Result> result;
+        private final CompletableFuture<CommandProcessor> written = new CompletableFuture<>();
+
+        Block(boolean independent) {
+            this.independent = independent;
+        }
+
+        Result run(CommandProcessor processor) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(buffer, false);
+            for(Command command : commands) {
+                processor.execute(command, out);
+                out.println();
+                out.println();
+            }
+            out.flush();
+            return new Result(processor, buffer.toByteArray());
+        }
+    }
+
+    private static final class Result {
+        private final CommandProcessor processor;
+        private final byte[] output;
+
+        Result(CommandProcessor processor, byte[] output) {
+            this.processor = processor;
+            this.output = output;
+        }
+    }
+}
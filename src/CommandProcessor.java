@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs commands against one board and its settings, as the interactive mode,
+ * the command file runner and each server connection do.
+ *
+ * Errors are reported on the output and the processor carries on; nothing
+ * here ends the process. A processor that is not local refuses the commands
+ * that read or write files or run the experiments.
+ */
+public final class CommandProcessor {
+    private Puzzle puzzle;
+    private final boolean local;
+    private boolean exited;
+
+    /**
+     * @param puzzle board and settings to start from
+     * @param local whether file and experiment commands are allowed
+     */
+    public CommandProcessor(Puzzle puzzle, boolean local) {
+        this.puzzle = puzzle;
+        this.local = local;
+    }
+
+    /**
+     * @return the puzzle holding the current board, replaced by every solve
+     */
+    public Puzzle getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * @return true once an exit command has run
+     */
+    public boolean isExited() {
+        return exited;
+    }
+
+    /**
+     * Run one command
+     * @param out stream the command's output goes to
+     */
+    public void execute(Command command, PrintStream out) {
+        try {
+            run(command, out);
+        }
+        catch (NumberFormatException e) {
+            out.println("Argument is not a number. Check arguments again.");
+        }
+    }
+
+    private void run(Command command, PrintStream out) {
+        if(command.getType().isGlobal() && !local) {
+            out.println("Command not available in server mode.");
+            return;
+        }
+        switch(command.getType()) {
+            case SOLVE:
+                solve(command, out);
+                break;
+            case ANYTIME:
+                anytime(command, out);
+                break;
+            case BATCH:
+                if(command.argCount() < 2) {
+                    out.println("Usage: batch <file> <algorithm> [argument] [threads]");
+                    break;
+                }
+                puzzle.runBatch(command.tokens());
+                break;
+            case SET_STATE:
+                try {
+                    puzzle.setBoardState(command.rest());
+                }
+                catch (IllegalArgumentException e) {
+                    out.println("Board state is invalid. Check state again.");
+                }
+                break;
+            case PRINT_STATE:
+                out.println("Current State: ");
+                puzzle.getInteractiveBoard().printBoard(out);
+                break;
+            case MOVE:
+                String direction = command.arg(0);
+                if(direction == null) {
+                    out.println("Missing argument.");
+                    break;
+                }
+                out.println("Moving up " + direction);
+                if(BoardSize.direction(direction) < 0) {
+                    out.println("Direction not recognized.");
+                }
+                else if(!puzzle.getInteractiveBoard().isLegalMove(direction)) {
+                    out.println("This is not a valid move!");
+                }
+                else {
+                    puzzle.setInteractiveBoard(puzzle.getInteractiveBoard().move(direction));
+                }
+                break;
+            case MAX_NODES:
+                if(command.argCount() < 1) {
+                    out.println("Missing argument.");
+                    break;
+                }
+                puzzle.setMaxNodes(Integer.parseInt(command.arg(0)));
+                break;
+            case MEMORY_LIMIT:
+                if(command.argCount() < 1) {
+                    out.println("Missing argument.");
+                    break;
+                }
+                puzzle.setMemoryLimit(parseBytes(command.arg(0)));
+                break;
+            case TIE_BREAK:
+                BucketQueue.TieBreak tieBreak = command.argCount() < 1 ? null
+                        : BucketQueue.TieBreak.fromLabel(command.arg(0));
+                if(tieBreak == null) {
+                    out.println("Tie-breaking policy not recognized. Use lowH, highG or lifo.");
+                    break;
+                }
+                puzzle.setTieBreak(tieBreak);
+                break;
+            case BUILD_DATABASE:
+                out.println("Building distance database....");
+                try {
+                    int states = Puzzle.rebuildDatabase();
+                    out.println("Wrote " + states + " states to " + DistanceDatabase.DEFAULT_PATH);
+                }
+                catch (IOException e) {
+                    out.println("Error writing distance database.");
+                    e.printStackTrace();
+                }
+                break;
+            case EXTERNAL_BFS:
+                externalBfs(command, out);
+                break;
+            case BENCHMARK:
+                try {
+                    BenchmarkRunner.run(Arrays.copyOfRange(command.tokens(), 1, command.argCount() + 1), out);
+                }
+                catch (IllegalArgumentException e) {
+                    out.println(e.getMessage());
+                }
+                catch (IOException e) {
+                    out.println("Error writing or reading benchmark results.");
+                    e.printStackTrace();
+                }
+                break;
+            case RANDOMIZE_STATE:
+                if(command.argCount() < 1) {
+                    out.println("Missing argument.");
+                    break;
+                }
+                out.println("Randomizing State");
+                int numMoves = Integer.parseInt(command.arg(0));
+                BoardSize size = puzzle.getInteractiveBoard().getSize();
+                if(command.argCount() > 1) {
+                    try {
+                        size = BoardSize.of(Integer.parseInt(command.arg(1)));
+                    }
+                    catch (IllegalArgumentException e) {
+                        out.println(e.getMessage());
+                        break;
+                    }
+                }
+                puzzle.setInteractiveBoard(Board.goal(size));
+                puzzle.generateNRandomMoves(numMoves, numMoves);
+                break;
+            case STATS:
+                out.println(puzzle.getStats());
+                break;
+            case CACHE:
+                SolutionCache cache = puzzle.getSolutionCache();
+                if(cache == null) {
+                    out.println("No solution cache.");
+                    break;
+                }
+                if("clear".equals(command.arg(0))) {
+                    cache.clear();
+                }
+                out.println(cache);
+                break;
+            case EXIT:
+                exited = true;
+                break;
+            case EXP_A:
+                out.println("Running experiment A ....");
+                ArrayList<Double> result = puzzle.expAstarH1();
+                ArrayList<Double> result2 = puzzle.expAstarH2();
+                ArrayList<Double> result4 = puzzle.expAstar("h4");
+                ArrayList<Double> result5 = puzzle.expAstar("h5");
+                ArrayList<Double> result3 = puzzle.expBeam();
+                out.println("A* H1: " + result.toString());
+                out.println("A* H2: " + result2.toString());
+                out.println("A* H4: " + result4.toString());
+                out.println("A* H5: " + result5.toString());
+                out.println("Beam: " + result3.toString());
+                break;
+            case EXP_B:
+                out.println("Running experiment B ....");
+                puzzle.exp2Runtime();
+                break;
+            case EXP_C:
+                out.println("Running experiment C ....");
+                puzzle.expC();
+                break;
+            case EXP_D:
+                out.println("Running experiment D ....");
+                puzzle.expHeuristics();
+                break;
+            default:
+                out.println("Command not recognized.");
+                break;
+        }
+    }
+
+    private void solve(Command command, PrintStream out) {
+        String algorithm = command.arg(0);
+        if(algorithm == null) {
+            out.println("Missing argument.");
+            return;
+        }
+        String arg = command.arg(1);
+        String label = Puzzle.algorithmLabel(algorithm);
+        if(label == null) {
+            out.println("Search algorithm not recognized. Check spelling.");
+            return;
+        }
+        puzzle = puzzle.newSearch();
+        if(algorithm.equals("A-star-par") && command.argCount() > 2) {
+            puzzle.setParallelism(Integer.parseInt(command.arg(2)));
+        }
+        if(algorithm.equals("beam")) {
+            puzzle.setBeamHeuristic(command.argCount() > 2 ? command.arg(2) : "h2");
+        }
+        out.println("Solving puzzle using " + label + "....");
+        Board solution;
+        try {
+            solution = puzzle.solve(algorithm, arg);
+        }
+        catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return;
+        }
+        catch (UncheckedIOException e) {
+            out.println("Error reading distance database.");
+            e.printStackTrace();
+            return;
+        }
+        if(solution == null) {
+            out.println("Finished without reaching goal.");
+        }
+        else {
+            puzzle.printSolution(solution, out);
+            puzzle.setInteractiveBoard(solution);
+            puzzle.getInteractiveBoard().clearData();
+        }
+        if(puzzle.getStats().getMemoryBudget() > 0) {
+            out.println(puzzle.getStats().memorySummary());
+        }
+    }
+
+    private void externalBfs(Command command, PrintStream out) {
+        if(command.argCount() < 1) {
+            out.println("Usage: externalBfs <dimension> [depth] [memory]");
+            return;
+        }
+        BoardSize size;
+        try {
+            size = BoardSize.of(Integer.parseInt(command.arg(0)));
+        }
+        catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return;
+        }
+        int depth = command.argCount() > 1 ? Integer.parseInt(command.arg(1)) : Integer.MAX_VALUE;
+        long budget = command.argCount() > 2 ? parseBytes(command.arg(2)) : ExternalBfs.DEFAULT_BUDGET;
+        if(budget < ExternalBfs.MIN_BUDGET || !size.isPacked()) {
+            out.println("External BFS needs a board of up to 16 cells and at least " + ExternalBfs.MIN_BUDGET + " bytes.");
+            return;
+        }
+        out.println("Running external-memory BFS on " + size + " boards....");
+        try {
+            Path directory = Files.createTempDirectory("bfs");
+            try(ExternalBfs bfs = new ExternalBfs(size, budget, directory)) {
+                int deepest = bfs.run(depth);
+                long[] layers = bfs.getLayerSizes();
+                for(int d = 0; d < layers.length; d++) {
+                    out.println("Depth " + d + ": " + layers[d]);
+                }
+                out.println("States: " + bfs.getStates() + ", deepest layer " + deepest);
+                out.println(bfs.ioReport());
+            }
+        }
+        catch (IOException e) {
+            out.println("Error writing search layers.");
+            e.printStackTrace();
+        }
+    }
+
+    private void anytime(Command command, PrintStream out) {
+        if(command.argCount() < 2) {
+            out.println("Usage: anytime <heuristic> <milliseconds> [weight]");
+            return;
+        }
+        long millis = Long.parseLong(command.arg(1));
+        double weight = command.argCount() > 2 ? Double.parseDouble(command.arg(2)) : AnytimeAStar.DEFAULT_WEIGHT;
+        puzzle = puzzle.newSearch();
+        out.println("Solving puzzle using anytime weighted A* algorithm....");
+        long started = System.nanoTime();
+        Board solution;
+        try {
+            solution = puzzle.solveAnytime(command.arg(0), weight, millis, (moves, w, bound) -> {
+                out.printf("Found %d moves with weight %.1f, at most %.2f times optimal (%.1f ms)%n",
+                        moves.length, w, bound, (System.nanoTime() - started) / 1e6);
+                StringBuilder path = new StringBuilder();
+                for(int direction : moves) {
+                    if(path.length() > 0) {
+                        path.append(' ');
+                    }
+                    path.append(BoardSize.DIRECTION_NAMES[direction]);
+                }
+                out.println(path);
+                out.flush();
+            });
+        }
+        catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return;
+        }
+        catch (UncheckedIOException e) {
+            out.println("Error reading distance database.");
+            e.printStackTrace();
+            return;
+        }
+        if(solution == null) {
+            out.println("Finished without reaching goal.");
+            return;
+        }
+        puzzle.printSolution(solution, out);
+        puzzle.setInteractiveBoard(solution);
+        puzzle.getInteractiveBoard().clearData();
+    }
+
+    /**
+     * @param amount a number of bytes, optionally followed by k, m or g
+     * @return the number of bytes
+     * @throws NumberFormatException if the amount is not a number
+     */
+    static long parseBytes(String amount) {
+        String digits = amount.toLowerCase();
+        int shift = 0;
+        switch(digits.charAt(digits.length() - 1)) {
+            case 'k': shift = 10; break;
+            case 'm': shift = 20; break;
+            case 'g': shift = 30; break;
+            default: break;
+        }
+        if(shift > 0) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        return Long.parseLong(digits) << shift;
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Exact goal distances for every 3x3 board, precomputed by a breadth-first
+ * search from Board.GOAL_STATE and stored on disk as one nibble per
+ * permutation rank.
+ *
+ * A nibble cannot hold the largest distance (31), so each entry stores the
+ * distance modulo 15 and reserves 15 for states that cannot reach the goal.
+ * Neighbouring states always differ in distance by exactly one, so the
+ * neighbour whose entry is one less (mod 15) is always a step along an optimal
+ * path. Solving is therefore a greedy walk that reads one entry per move.
+ */
+public final class DistanceDatabase {
+    public static final String DEFAULT_PATH = "distances.db";
+
+    private static final BoardSize SIZE = BoardSize.EIGHT_PUZZLE;
+    private static final int CELLS = SIZE.getCells();
+    private static final int MAGIC = 0x38504442;
+    private static final int HEADER_BYTES = 8;
+    private static final int MODULUS = 15;
+    private static final int UNREACHABLE = 15;
+    private static final int ENTRIES = factorial(CELLS);
+    private static final int[] FACTORIALS = new int[CELLS];
+
+    static {
+        for(int i = 0; i < CELLS; i++) {
+            FACTORIALS[i] = factorial(i);
+        }
+    }
+
+    private final ByteBuffer table;
+
+    private DistanceDatabase(ByteBuffer table) {
+        this.table = table;
+    }
+
+    /**
+     * Memory-map a database written by {@link #build(Path)}
+     * @param path database file
+     * @return the mapped database
+     * @throws IOException if the file is missing or is not a distance database
+     */
+    public static DistanceDatabase load(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long expected = HEADER_BYTES + ENTRIES / 2;
+            if(channel.size() != expected) {
+                throw new IOException("Unexpected database size " + channel.size() + " in " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != ENTRIES) {
+                throw new IOException(path + " is not a distance database");
+            }
+            buffer.position(HEADER_BYTES);
+            return new DistanceDatabase(buffer.slice());
+        }
+    }
+
+    /**
+     * Map the database at the given path, building it first if the file does not exist yet
+     */
+    public static DistanceDatabase loadOrBuild(Path path) throws IOException {
+        if(!Files.exists(path)) {
+            build(path);
+        }
+        return load(path);
+    }
+
+    /**
+     * Enumerate every state reachable from the goal and write the distance file
+     * @param path file to (over)write
+     * @return number of reachable states
+     */
+    public static int build(Path path) throws IOException {
+        byte[] nibbles = new byte[ENTRIES / 2];
+        Arrays.fill(nibbles, (byte) 0xFF);
+
+        long[] frontier = new long[ENTRIES / 2];
+        int head = 0;
+        int tail = 0;
+        frontier[tail++] = Board.GOAL_STATE;
+        setNibble(nibbles, rank(Board.GOAL_STATE), 0);
+
+        // BFS one layer at a time so the depth of every state is known
+        int depth = 0;
+        while(head < tail) {
+            int layerEnd = tail;
+            depth++;
+            while(head < layerEnd) {
+                long state = frontier[head++];
+                for(int direction : SIZE.legalMoves(SIZE.blank(state))) {
+                    long child = SIZE.move(state, direction);
+                    int r = rank(child);
+                    if(getNibble(nibbles, r) == UNREACHABLE) {
+                        setNibble(nibbles, r, depth % MODULUS);
+                        frontier[tail++] = child;
+                    }
+                }
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(ENTRIES).flip();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(header);
+            ByteBuffer body = ByteBuffer.wrap(nibbles);
+            while(body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Walk an optimal path to the goal
+     * @param start packed start state
+     * @return the directions to move the blank, or null if the goal is unreachable
+     */
+    public int[] solve(long start) {
+        int value = entry(start);
+        if(value == UNREACHABLE) {
+            return null;
+        }
+        int[] path = new int[32];
+        int length = 0;
+        long state = start;
+        while(state != Board.GOAL_STATE) {
+            int wanted = (value + MODULUS - 1) % MODULUS;
+            for(int direction : SIZE.legalMoves(SIZE.blank(state))) {
+                long child = SIZE.move(state, direction);
+                if(entry(child) == wanted) {
+                    state = child;
+                    value = wanted;
+                    if(length == path.length) {
+                        path = Arrays.copyOf(path, length << 1);
+                    }
+                    path[length++] = direction;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * @return the optimal number of moves to the goal, or -1 if it is unreachable
+     */
+    public int distance(long state) {
+        int[] path = solve(state);
+        return path == null ? -1 : path.length;
+    }
+
+    private int entry(long state) {
+        int r = rank(state);
+        int b = table.get(r >>> 1);
+        return (r & 1) == 0 ? b & 0xF : (b >>> 4) & 0xF;
+    }
+
+    private static int getNibble(byte[] nibbles, int index) {
+        int b = nibbles[index >>> 1];
+        return (index & 1) == 0 ? b & 0xF : (b >>> 4) & 0xF;
+    }
+
+    private static void setNibble(byte[] nibbles, int index, int value) {
+        int i = index >>> 1;
+        if((index & 1) == 0) {
+            nibbles[i] = (byte) ((nibbles[i] & 0xF0) | value);
+        }
+        else {
+            nibbles[i] = (byte) ((nibbles[i] & 0x0F) | (value << 4));
+        }
+    }
+
+    /**
+     * Lehmer rank of the tile permutation, in [0, 9!)
+     */
+    static int rank(long state) {
+        int rank = 0;
+        int seen = 0;
+        for(int cell = 0; cell < CELLS; cell++) {
+            int tile = BoardSize.tileAt(state, cell);
+            int smallerUnseen = tile - Integer.bitCount(seen & ((1 << tile) - 1));
+            rank += smallerUnseen * FACTORIALS[CELLS - 1 - cell];
+            seen |= 1 << tile;
+        }
+        return rank;
+    }
+
+    private static int factorial(int n) {
+        int f = 1;
+        for(int i = 2; i <= n; i++) {
+            f *= i;
+        }
+        return f;
+    }
+
+    public static Path defaultPath() {
+        return Paths.get(DEFAULT_PATH);
+    }
+}
@@ -0,0 +1,486 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Breadth-first search from the goal that keeps its layers on disk, for state
+ * spaces too large for the closed table.
+ *
+ * Each layer is a file of packed states in ascending order. A layer is
+ * expanded by streaming it through a fixed buffer and collecting successors
+ * in a second buffer; whenever that fills it is sorted, stripped of duplicates
+ * and written out as a run. Duplicates are then removed in bulk rather than
+ * one lookup at a time: the runs are merged into the next layer, keeping each
+ * state once and dropping the states of the two layers before it, which are
+ * memory-mapped and walked alongside. (A move changes a sliding puzzle's
+ * distance by exactly one, so those are the only earlier layers a successor
+ * can be in.) If there are more runs than merge buffers fit in the budget,
+ * they are merged in several passes.
+ *
+ * Heap use is bounded by the memory budget whatever the size of the search;
+ * the layers are read back through the page cache. The layer sizes are the
+ * exact distance distribution, and {@link #distance} looks a state up in the
+ * mapped layers.
+ */
+public final class ExternalBfs implements Closeable {
+    public static final long DEFAULT_BUDGET = 64L << 20;
+    /** Bytes buffered for each file streamed in or out */
+    public static final int IO_BUFFER = 1 << 16;
+    public static final long MIN_BUDGET = 4L * IO_BUFFER;
+    // bytes per mapped window of a layer file, a multiple of the state size
+    private static final long WINDOW = 1L << 30;
+
+    private final BoardSize size;
+    private final Path directory;
+    private final long[] sortBuffer;
+    private final int mergeFactor;
+    private final List<Path> layers = new ArrayList<>();
+    private final List<Long> layerSizes = new ArrayList<>();
+    private final List<MappedLayer> mapped = new ArrayList<>();
+    private int runCount;
+
+    private long bytesRead;
+    private long bytesWritten;
+    private long nanos;
+
+    /**
+     * @param size board size; must be packed
+     * @param budget bytes of heap for buffers
+     * @param directory where the layer and run files go; created if missing
+     */
+    public ExternalBfs(BoardSize size, long budget, Path directory) throws IOException {
+        if(!size.isPacked()) {
+            throw new IllegalArgumentException("External BFS supports boards of up to 16 cells, not " + size);
+        }
+        if(budget < MIN_BUDGET) {
+            throw new IllegalArgumentException("Memory limit must be at least " + MIN_BUDGET + " bytes.");
+        }
+        this.size = size;
+        this.directory = Files.createDirectories(directory);
+        // half the budget sorts successors, the other half buffers the files being merged
+        this.sortBuffer = new long[(int) Math.min(budget / 2 / 8, Integer.MAX_VALUE - 8)];
+        this.mergeFactor = (int) Math.max(2, budget / 2 / IO_BUFFER - 1);
+    }
+
+    /**
+     * Expand layers until one is empty or the depth limit is reached
+     * @param maxDepth deepest layer to build
+     * @return the number of the deepest non-empty layer
+     */
+    public int run(int maxDepth) throws IOException {
+        long started = System.nanoTime();
+        try {
+            if(layers.isEmpty()) {
+                Path first = file("layer-0");
+                try(Output out = new Output(first)) {
+                    out.write(size.getGoalState());
+                }
+                addLayer(first, 1);
+            }
+            while(layers.size() <= maxDepth) {
+                Path next = expand(layers.size() - 1);
+                long count = Files.size(next) / 8;
+                if(count == 0) {
+                    Files.delete(next);
+                    break;
+                }
+                addLayer(next, count);
+            }
+            return layers.size() - 1;
+        }
+        finally {
+            nanos += System.nanoTime() - started;
+        }
+    }
+
+    /**
+     * @return the number of states at each distance from the goal
+     */
+    public long[] getLayerSizes() {
+        long[] sizes = new long[layerSizes.size()];
+        for(int i = 0; i < sizes.length; i++) {
+            sizes[i] = layerSizes.get(i);
+        }
+        return sizes;
+    }
+
+    /**
+     * @return the number of states found
+     */
+    public long getStates() {
+        long total = 0;
+        for(long n : layerSizes) {
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * @param state packed state
+     * @return its distance from the goal, or -1 if it is not in a layer built so far
+     */
+    public int distance(long state) {
+        for(int d = 0; d < mapped.size(); d++) {
+            if(mapped.get(d).contains(state)) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the bytes moved to and from disk, and their rate over the search time
+     */
+    public String ioReport() {
+        double seconds = nanos / 1e9;
+        double megabytes = (bytesRead + bytesWritten) / 1e6;
+        return String.format("I/O: read %.1f MB, wrote %.1f MB in %.2f s (%.1f MB/s), %d runs",
+                bytesRead / 1e6, bytesWritten / 1e6, seconds, seconds == 0 ? 0 : megabytes / seconds, runCount);
+    }
+
+    /**
+     * Delete every file the search wrote
+     */
+    @Override
+    public void close() throws IOException {
+        mapped.clear();
+        for(Path layer : layers) {
+            Files.deleteIfExists(layer);
+        }
+        layers.clear();
+        layerSizes.clear();
+        try {
+            Files.deleteIfExists(directory);
+        }
+        catch (IOException e) {
+            // not empty: the directory held other files too
+        }
+    }
+
+    private void addLayer(Path file, long count) throws IOException {
+        layers.add(file);
+        layerSizes.add(count);
+        mapped.add(new MappedLayer(file, count));
+    }
+
+    /**
+     * Write the successors of a layer that are in neither it nor the layer before
+     * @return the file of the next layer
+     */
+    private Path expand(int depth) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        int n = 0;
+        try(Input in = new Input(layers.get(depth))) {
+            while(in.hasNext()) {
+                long s = in.next();
+                int blank = size.blank(s);
+                for(int direction : size.legalMoves(blank)) {
+                    sortBuffer[n++] = size.move(s, direction);
+                    if(n == sortBuffer.length) {
+                        runs.add(writeRun(n));
+                        n = 0;
+                    }
+                }
+            }
+        }
+        if(n > 0 || runs.isEmpty()) {
+            runs.add(writeRun(n));
+        }
+
+        // merge in passes until the rest fit in one
+        while(runs.size() > mergeFactor) {
+            List<Path> merged = new ArrayList<>();
+            for(int i = 0; i < runs.size(); i += mergeFactor) {
+                List<Path> group = runs.subList(i, Math.min(runs.size(), i + mergeFactor));
+                Path run = file("run-" + runCount++);
+                merge(group, run, null, null);
+                merged.add(run);
+            }
+            runs = merged;
+        }
+        Path next = file("layer-" + (depth + 1));
+        merge(runs, next, mapped.get(depth), depth > 0 ? mapped.get(depth - 1) : null);
+        return next;
+    }
+
+    /**
+     * Sort the first n successors, drop repeats and write them to a new run
+     */
+    private Path writeRun(int n) throws IOException {
+        Arrays.sort(sortBuffer, 0, n);
+        Path run = file("run-" + runCount++);
+        try(Output out = new Output(run)) {
+            for(int i = 0; i < n; i++) {
+                if(i == 0 || sortBuffer[i] != sortBuffer[i - 1]) {
+                    out.write(sortBuffer[i]);
+                }
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Merge sorted runs into one file, keeping each state once and leaving out
+     * the states of the excluded layers; the runs are deleted
+     */
+    private void merge(List<Path> runs, Path target, MappedLayer excluded, MappedLayer excludedToo) throws IOException {
+        Input[] inputs = new Input[runs.size()];
+        // heap of input indices ordered by their next state
+        int[] heap = new int[runs.size()];
+        int live = 0;
+        long skip = 0;
+        long skipToo = 0;
+        try(Output out = new Output(target)) {
+            for(int i = 0; i < inputs.length; i++) {
+                inputs[i] = new Input(runs.get(i));
+                if(inputs[i].hasNext()) {
+                    heap[live] = i;
+                    siftUp(inputs, heap, live++);
+                }
+            }
+            boolean any = false;
+            long last = 0;
+            while(live > 0) {
+                Input top = inputs[heap[0]];
+                long s = top.next();
+                if(top.hasNext()) {
+                    siftDown(inputs, heap, 0, live);
+                }
+                else {
+                    heap[0] = heap[--live];
+                    siftDown(inputs, heap, 0, live);
+                }
+                if(any && s == last) {
+                    continue;
+                }
+                any = true;
+                last = s;
+                if(excluded != null) {
+                    skip = excluded.advance(skip, s);
+                    if(skip < excluded.count && excluded.get(skip) == s) {
+                        continue;
+                    }
+                }
+                if(excludedToo != null) {
+                    skipToo = excludedToo.advance(skipToo, s);
+                    if(skipToo < excludedToo.count && excludedToo.get(skipToo) == s) {
+                        continue;
+                    }
+                }
+                out.write(s);
+            }
+        }
+        finally {
+            for(Input in : inputs) {
+                if(in != null) {
+                    in.close();
+                }
+            }
+        }
+        if(excluded != null) {
+            bytesRead += excluded.count * 8;
+        }
+        if(excludedToo != null) {
+            bytesRead += excludedToo.count * 8;
+        }
+        for(Path run : runs) {
+            Files.delete(run);
+        }
+    }
+
+    private static void siftUp(Input[] inputs, int[] heap, int i) {
+        while(i > 0) {
+            int p = (i - 1) >> 1;
+            if(inputs[heap[p]].peek() <= inputs[heap[i]].peek()) {
+                break;
+            }
+            int t = heap[p];
+            heap[p] = heap[i];
+            heap[i] = t;
+            i = p;
+        }
+    }
+
+    private static void siftDown(Input[] inputs, int[] heap, int i, int count) {
+        while(true) {
+            int c = (i << 1) + 1;
+            if(c >= count) {
+                break;
+            }
+            if(c + 1 < count && inputs[heap[c + 1]].peek() < inputs[heap[c]].peek()) {
+                c++;
+            }
+            if(inputs[heap[i]].peek() <= inputs[heap[c]].peek()) {
+                break;
+            }
+            int t = heap[c];
+            heap[c] = heap[i];
+            heap[i] = t;
+            i = c;
+        }
+    }
+
+    private Path file(String name) {
+        return directory.resolve(name + ".bin");
+    }
+
+    /**
+     * A file of states read sequentially through a fixed buffer
+     */
+    private final class Input implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER);
+        private boolean ended;
+
+        Input(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.limit(0);
+            fill();
+        }
+
+        boolean hasNext() {
+            return buffer.hasRemaining();
+        }
+
+        long peek() {
+            return buffer.getLong(buffer.position());
+        }
+
+        long next() throws IOException {
+            long s = buffer.getLong();
+            if(!buffer.hasRemaining()) {
+                fill();
+            }
+            return s;
+        }
+
+        private void fill() throws IOException {
+            if(ended) {
+                return;
+            }
+            buffer.clear();
+            while(buffer.hasRemaining()) {
+                int read = channel.read(buffer);
+                if(read < 0) {
+                    ended = true;
+                    break;
+                }
+                bytesRead += read;
+            }
+            buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * A file of states written sequentially through a fixed buffer
+     */
+    private final class Output implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER);
+
+        Output(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(long s) throws IOException {
+            if(!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.putLong(s);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            }
+            finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * A finished layer, memory-mapped in windows so that it can be of any length
+     */
+    private static final class MappedLayer {
+        private final MappedByteBuffer[] windows;
+        private final long count;
+
+        MappedLayer(Path file, long count) throws IOException {
+            this.count = count;
+            long bytes = count * 8;
+            windows = new MappedByteBuffer[(int) ((bytes + WINDOW - 1) / WINDOW)];
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for(int w = 0; w < windows.length; w++) {
+                    long offset = w * WINDOW;
+                    windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, bytes - offset));
+                }
+            }
+        }
+
+        long get(long i) {
+            long offset = i * 8;
+            return windows[(int) (offset / WINDOW)].getLong((int) (offset % WINDOW));
+        }
+
+        /**
+         * @return the first index from i on whose state is at least s
+         */
+        long advance(long i, long s) {
+            while(i < count && get(i) < s) {
+                i++;
+            }
+            return i;
+        }
+
+        boolean contains(long s) {
+            long lo = 0;
+            long hi = count - 1;
+            while(lo <= hi) {
+                long mid = (lo + hi) >>> 1;
+                long v = get(mid);
+                if(v < s) {
+                    lo = mid + 1;
+                }
+                else if(v > s) {
+                    hi = mid - 1;
+                }
+                else {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * The distance-to-goal estimates the searches can use, resolved from their
+ * command names once per search.
+ *
+ * Misplaced tiles and Manhattan distance are sums of a per-tile, per-cell cost
+ * (see {@link BoardSize#misplacedCost} and {@link BoardSize#manhattanCost}). A
+ * move slides exactly one tile, so a child's value is its parent's plus the
+ * difference of two table entries. Linear conflict also rereads the two lines
+ * the tile moved between. Walking distance and the pattern database are not
+ * updated piecewise and are looked up again for every child.
+ */
+public enum Heuristic {
+    /** h1: number of tiles out of place */
+    MISPLACED("h1") {
+        @Override
+        public int evaluate(BoardSize size, long state) {
+            return size.misplacedTiles(state);
+        }
+
+        @Override
+        public int evaluate(BoardSize size, byte[] tiles) {
+            int offset = 0;
+            for(int cell = 0; cell < tiles.length; cell++) {
+                offset += size.misplacedCost(tiles[cell], cell);
+            }
+            return offset;
+        }
+
+        @Override
+        public int update(BoardSize size, int h, long child, int tile, int from, int to) {
+            return h + size.misplacedCost(tile, to) - size.misplacedCost(tile, from);
+        }
+
+        @Override
+        public int update(BoardSize size, int h, byte[] child, int tile, int from, int to) {
+            return h + size.misplacedCost(tile, to) - size.misplacedCost(tile, from);
+        }
+    },
+    /** h2: sum of the tiles' manhattan distances to their goal cells */
+    MANHATTAN("h2") {
+        @Override
+        public int evaluate(BoardSize size, long state) {
+            return size.manhattan(state);
+        }
+
+        @Override
+        public int evaluate(BoardSize size, byte[] tiles) {
+            int totalSum = 0;
+            for(int cell = 0; cell < tiles.length; cell++) {
+                totalSum += size.manhattanCost(tiles[cell], cell);
+            }
+            return totalSum;
+        }
+
+        @Override
+        public int update(BoardSize size, int h, long child, int tile, int from, int to) {
+            return h + size.manhattanCost(tile, to) - size.manhattanCost(tile, from);
+        }
+
+        @Override
+        public int update(BoardSize size, int h, byte[] child, int tile, int from, int to) {
+            return h + size.manhattanCost(tile, to) - size.manhattanCost(tile, from);
+        }
+    },
+    /** h3: additive pattern database; packed sizes only */
+    PATTERN_DATABASE("h3") {
+        @Override
+        public int evaluate(BoardSize size, long state) {
+            return PatternDatabase.standard(size).evaluate(state);
+        }
+
+        @Override
+        public int evaluate(BoardSize size, byte[] tiles) {
+            return PatternDatabase.standard(size).evaluate(size.pack(tiles));
+        }
+    },
+    /** h4: Manhattan distance plus row and column linear conflicts */
+    LINEAR_CONFLICT("h4") {
+        @Override
+        public int evaluate(BoardSize size, long state) {
+            return LinearConflict.of(size).evaluate(state);
+        }
+
+        @Override
+        public int evaluate(BoardSize size, byte[] tiles) {
+            return LinearConflict.of(size).evaluate(tiles);
+        }
+
+        @Override
+        public int update(BoardSize size, int h, long child, int tile, int from, int to) {
+            return LinearConflict.of(size).update(h, child, null, tile, from, to);
+        }
+
+        @Override
+        public int update(BoardSize size, int h, byte[] child, int tile, int from, int to) {
+            return LinearConflict.of(size).update(h, 0, child, tile, from, to);
+        }
+    },
+    /** h5: vertical plus horizontal walking distance; packed sizes only */
+    WALKING_DISTANCE("h5") {
+        @Override
+        public int evaluate(BoardSize size, long state) {
+            return WalkingDistance.standard(size).evaluate(state);
+        }
+
+        @Override
+        public int evaluate(BoardSize size, byte[] tiles) {
+            return WalkingDistance.standard(size).evaluate(size.pack(tiles));
+        }
+    };
+
+    private final String label;
+
+    Heuristic(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @param size board size
+     * @param state packed board
+     * @return estimated moves to the goal
+     */
+    public abstract int evaluate(BoardSize size, long state);
+
+    /**
+     * @param size board size
+     * @param tiles tile number per cell
+     * @return estimated moves to the goal
+     */
+    public abstract int evaluate(BoardSize size, byte[] tiles);
+
+    /**
+     * Value for a child from its parent's value. By default the child is
+     * evaluated from scratch.
+     * @param h the parent's value
+     * @param child packed child state
+     * @param tile the tile that moved
+     * @param from the cell the tile left, which is the child's blank
+     * @param to the cell the tile moved into, which was the parent's blank
+     * @return the child's value
+     */
+    public int update(BoardSize size, int h, long child, int tile, int from, int to) {
+        return evaluate(size, child);
+    }
+
+    /**
+     * As {@link #update(BoardSize, int, long, int, int, int)} for an unpacked child
+     */
+    public int update(BoardSize size, int h, byte[] child, int tile, int from, int to) {
+        return evaluate(size, child);
+    }
+
+    /**
+     * @param label "h1", "h2", "h3"/"pdb", "h4" or "h5"
+     * @return the matching heuristic, or null if the label is not recognized
+     */
+    public static Heuristic fromLabel(String label) {
+        if("pdb".equals(label)) {
+            return PATTERN_DATABASE;
+        }
+        for(Heuristic h : values()) {
+            if(h.label.equals(label)) {
+                return h;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The heuristic a search on the given size uses for a label, keeping the
+     * long-standing behaviour of Board.computeHeuristic: unrecognized labels mean
+     * Manhattan distance. Sizes too large to pack have no pattern database, which
+     * falls back to Manhattan distance, and no walking distance table, which falls
+     * back to linear conflict.
+     */
+    public static Heuristic forSearch(BoardSize size, String label) {
+        Heuristic h = fromLabel(label);
+        if(h == null) {
+            return MANHATTAN;
+        }
+        if(!size.isPacked() && h == PATTERN_DATABASE) {
+            return MANHATTAN;
+        }
+        if(!size.isPacked() && h == WALKING_DISTANCE) {
+            return LINEAR_CONFLICT;
+        }
+        return h;
+    }
+}
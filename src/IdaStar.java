@@ -0,0 +1,132 @@
+import java.util.Arrays;
+
+/**
+ * Iterative-deepening A* over a single mutable packed board (up to 4x4).
+ *
+ * Each iteration is a depth-first search bounded by f = g + h. Moves are applied
+ * to {@link #state} in place and undone on the way back up, the move that would
+ * reverse the previous one is never tried, and the current path is kept as an
+ * array of directions indexed by depth. Memory use is linear in the solution
+ * length and nothing is allocated while searching.
+ */
+public final class IdaStar {
+    private static final int FOUND = -1;
+    private static final int NO_MOVE = -1;
+
+    private final BoardSize size;
+    private final Heuristic heuristic;
+    private final int maxNodes;
+    private SearchLimit limit = SearchLimit.NONE;
+
+    private long state;
+    private int[] path = new int[64];
+    private int nodesVisited;
+    private boolean exceededMax;
+
+    /**
+     * @param size board size; must be packed
+     * @param heuristicType a label accepted by {@link Heuristic#fromLabel}
+     * @param maxNodes expansion limit across all iterations
+     */
+    public IdaStar(BoardSize size, String heuristicType, int maxNodes) {
+        if(!size.isPacked()) {
+            throw new IllegalArgumentException("IDA* supports boards of up to 16 cells, not " + size);
+        }
+        this.size = size;
+        this.heuristic = Heuristic.forSearch(size, heuristicType);
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Search for an optimal path from the start state to the goal
+     * @param start packed start state
+     * @return the directions to move the blank, or null if the goal is unreachable
+     * or the node limit was hit
+     */
+    public int[] solve(long start) {
+        nodesVisited = 0;
+        exceededMax = false;
+        if(!size.isSolvable(start)) {
+            return null;
+        }
+
+        state = start;
+        int h = heuristic.evaluate(size, start);
+        int bound = h;
+        while(true) {
+            if(bound >= path.length) {
+                path = Arrays.copyOf(path, bound << 1);
+            }
+            int t = search(0, h, bound, NO_MOVE);
+            if(t == FOUND) {
+                return Arrays.copyOf(path, bound);
+            }
+            if(exceededMax) {
+                return null;
+            }
+            bound = t;
+        }
+    }
+
+    /**
+     * @param limit deadline and cancellation, checked alongside the node limit
+     */
+    public void setLimit(SearchLimit limit) {
+        this.limit = limit;
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
+
+    public boolean getExceedMax() {
+        return exceededMax;
+    }
+
+    /**
+     * Depth-first search below the current state
+     * @param g number of moves made so far
+     * @param h heuristic value of the current state
+     * @param bound f limit for this iteration
+     * @param lastMove direction that produced the current state
+     * @return FOUND, or the smallest f that exceeded the bound
+     */
+    private int search(int g, int h, int bound, int lastMove) {
+        int f = g + h;
+        if(f > bound) {
+            return f;
+        }
+        if(state == size.getGoalState()) {
+            return FOUND;
+        }
+        if(nodesVisited >= maxNodes || limit.shouldStop(nodesVisited)) {
+            exceededMax = true;
+            return Integer.MAX_VALUE;
+        }
+        nodesVisited++;
+
+        int min = Integer.MAX_VALUE;
+        int blank = size.blank(state);
+        for(int direction : size.legalMoves(blank)) {
+            if(lastMove != NO_MOVE && direction == BoardSize.opposite(lastMove)) {
+                continue;
+            }
+            int target = size.target(blank, direction);
+            int tile = BoardSize.tileAt(state, target);
+            state = size.move(state, direction);
+            path[g] = direction;
+            int t = search(g + 1, heuristic.update(size, h, state, tile, target, blank), bound, direction);
+            if(t == FOUND) {
+                return FOUND;
+            }
+            state = size.move(state, BoardSize.opposite(direction));
+            if(exceededMax) {
+                return Integer.MAX_VALUE;
+            }
+            if(t < min) {
+                min = t;
+            }
+        }
+        return min;
+    }
+}
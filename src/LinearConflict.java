@@ -0,0 +1,150 @@
+/**
+ * Manhattan distance plus linear conflicts.
+ *
+ * Two tiles conflict when they are in their goal row (or column) but in the
+ * wrong order, so one of them has to leave the line and come back: two moves
+ * that Manhattan distance does not count. For each line the fewest tiles that
+ * must leave is the number of tiles at home in that line minus the longest run
+ * of them already in increasing goal order; rows only add vertical moves and
+ * columns only horizontal ones, so both totals can be added to the Manhattan
+ * distance and the result stays admissible.
+ *
+ * A line is described by one base-(n + 1) digit per cell: 0 when the cell holds
+ * the blank or a tile that belongs to another line, otherwise one more than the
+ * tile's goal position along the line. The extra cost of every such description
+ * is precomputed, so a line costs n digit lookups and one table read.
+ */
+public final class LinearConflict {
+    private static final LinearConflict[] TABLES = new LinearConflict[BoardSize.MAX_DIMENSION + 1];
+
+    static {
+        for(int n = BoardSize.MIN_DIMENSION; n <= BoardSize.MAX_DIMENSION; n++) {
+            TABLES[n] = new LinearConflict(BoardSize.of(n));
+        }
+    }
+
+    private final BoardSize size;
+    private final int n;
+    /** extra[key] is twice the number of tiles that must leave a line described by key */
+    private final byte[] extra;
+    /** place[i] is (n + 1)^i, the weight of position i along a line */
+    private final int[] place;
+
+    private LinearConflict(BoardSize size) {
+        this.size = size;
+        this.n = size.getDimension();
+        this.place = new int[n + 1];
+        place[0] = 1;
+        for(int i = 1; i <= n; i++) {
+            place[i] = place[i - 1] * (n + 1);
+        }
+
+        extra = new byte[place[n]];
+        int[] order = new int[n];
+        int[] longest = new int[n];
+        for(int key = 0; key < extra.length; key++) {
+            int count = 0;
+            for(int i = 0, rest = key; i < n; i++, rest /= n + 1) {
+                if(rest % (n + 1) != 0) {
+                    order[count++] = rest % (n + 1);
+                }
+            }
+            int best = 0;
+            for(int i = 0; i < count; i++) {
+                longest[i] = 1;
+                for(int j = 0; j < i; j++) {
+                    if(order[j] < order[i] && longest[j] + 1 > longest[i]) {
+                        longest[i] = longest[j] + 1;
+                    }
+                }
+                best = Math.max(best, longest[i]);
+            }
+            extra[key] = (byte) (2 * (count - best));
+        }
+    }
+
+    public static LinearConflict of(BoardSize size) {
+        return TABLES[size.getDimension()];
+    }
+
+    /**
+     * @param state packed board
+     * @return Manhattan distance plus linear conflicts
+     */
+    public int evaluate(long state) {
+        int total = size.manhattan(state);
+        for(int line = 0; line < n; line++) {
+            total += extra[rowKey(state, null, line)] + extra[columnKey(state, null, line)];
+        }
+        return total;
+    }
+
+    /**
+     * @param tiles tile number per cell
+     * @return Manhattan distance plus linear conflicts
+     */
+    public int evaluate(byte[] tiles) {
+        int total = Heuristic.MANHATTAN.evaluate(size, tiles);
+        for(int line = 0; line < n; line++) {
+            total += extra[rowKey(0, tiles, line)] + extra[columnKey(0, tiles, line)];
+        }
+        return total;
+    }
+
+    /**
+     * Value for a child from its parent's. Only the lines the tile left and
+     * entered can change: two rows for a vertical move, two columns for a
+     * horizontal one. Their parent descriptions are the child's with the tile's
+     * digit moved back.
+     * @param state packed child, or ignored when tiles is given
+     * @param tiles unpacked child, or null
+     */
+    public int update(int h, long state, byte[] tiles, int tile, int from, int to) {
+        h += size.manhattanCost(tile, to) - size.manhattanCost(tile, from);
+        int fromRow = from / n;
+        int toRow = to / n;
+        int goal = size.goalCell(tile);
+        if(fromRow != toRow) {
+            int column = from % n;
+            int childFrom = rowKey(state, tiles, fromRow);
+            int childTo = rowKey(state, tiles, toRow);
+            int parentFrom = childFrom + (goal / n == fromRow ? goal % n + 1 : 0) * place[column];
+            int parentTo = childTo - (goal / n == toRow ? goal % n + 1 : 0) * place[column];
+            return h + extra[childFrom] + extra[childTo] - extra[parentFrom] - extra[parentTo];
+        }
+        int fromColumn = from % n;
+        int toColumn = to % n;
+        int row = from / n;
+        int childFrom = columnKey(state, tiles, fromColumn);
+        int childTo = columnKey(state, tiles, toColumn);
+        int parentFrom = childFrom + (goal % n == fromColumn ? goal / n + 1 : 0) * place[row];
+        int parentTo = childTo - (goal % n == toColumn ? goal / n + 1 : 0) * place[row];
+        return h + extra[childFrom] + extra[childTo] - extra[parentFrom] - extra[parentTo];
+    }
+
+    private int rowKey(long state, byte[] tiles, int row) {
+        int key = 0;
+        for(int column = 0; column < n; column++) {
+            int cell = row * n + column;
+            int tile = tiles == null ? BoardSize.tileAt(state, cell) : tiles[cell];
+            int goal = size.goalCell(tile);
+            if(tile != 0 && goal / n == row) {
+                key += (goal % n + 1) * place[column];
+            }
+        }
+        return key;
+    }
+
+    private int columnKey(long state, byte[] tiles, int column) {
+        int key = 0;
+        for(int row = 0; row < n; row++) {
+            int cell = row * n + column;
+            int tile = tiles == null ? BoardSize.tileAt(state, cell) : tiles[cell];
+            int goal = size.goalCell(tile);
+            if(tile != 0 && goal % n == column) {
+                key += (goal / n + 1) * place[row];
+            }
+        }
+        return key;
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.Arrays;
+
+/**
+ * Search nodes stored as parallel primitive arrays and referred to by index.
+ *
+ * A node is its state key (the packed board, or an interner id for boards
+ * too large to pack), g, h, the index of its parent and the move that reached
+ * it: 19 bytes, against well over a hundred for a Board with its parent
+ * reference and strings. Nodes are only ever added, so clearing the arena for
+ * the next search just resets the count and keeps the arrays.
+ */
+public final class NodeArena {
+    /** parent index of a root node */
+    public static final int NONE = -1;
+    public static final int BYTES_PER_NODE = 8 + 4 + 2 + 4 + 1;
+    private static final int INITIAL_NODES = 1024;
+
+    private long[] state = new long[INITIAL_NODES];
+    private int[] g = new int[INITIAL_NODES];
+    private short[] h = new short[INITIAL_NODES];
+    private int[] parent = new int[INITIAL_NODES];
+    private byte[] move = new byte[INITIAL_NODES];
+    private int count;
+
+    /**
+     * @param key state key
+     * @param gValue cost of the path that reached the state
+     * @param hValue heuristic estimate
+     * @param parentNode index of the node expanded to reach it, or NONE
+     * @param direction direction the blank moved, or -1 for a root
+     * @return index of the new node
+     */
+    public int add(long key, int gValue, int hValue, int parentNode, int direction) {
+        if(count == state.length) {
+            int capacity = count << 1;
+            state = Arrays.copyOf(state, capacity);
+            g = Arrays.copyOf(g, capacity);
+            h = Arrays.copyOf(h, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            move = Arrays.copyOf(move, capacity);
+        }
+        state[count] = key;
+        g[count] = gValue;
+        h[count] = (short) hValue;
+        parent[count] = parentNode;
+        move[count] = (byte) direction;
+        return count++;
+    }
+
+    public long state(int node) {
+        return state[node];
+    }
+
+    public int g(int node) {
+        return g[node];
+    }
+
+    public int h(int node) {
+        return h[node];
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return bytes the arena's arrays occupy
+     */
+    public long capacityBytes() {
+        return (long) state.length * BYTES_PER_NODE;
+    }
+
+    /**
+     * Forget every node, keeping the storage
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * @return the directions that lead from the node's root to the node
+     */
+    public int[] path(int node) {
+        int length = 0;
+        for(int n = node; parent[n] != NONE; n = parent[n]) {
+            length++;
+        }
+        int[] moves = new int[length];
+        for(int n = node; parent[n] != NONE; n = parent[n]) {
+            moves[--length] = move[n];
+        }
+        return moves;
+    }
+}
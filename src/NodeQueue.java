@@ -0,0 +1,192 @@
+import java.util.Arrays;
+
+/**
+ * Open list of int node ids, such as indices into a {@link NodeArena}, for
+ * searches whose priorities are small non-negative integers.
+ *
+ * Ids are kept in LIFO stacks indexed first by f and then by a secondary key
+ * chosen by the tie-breaking policy, so push is O(1) and poll is O(1)
+ * amortized: the cursors only move past buckets that have been emptied. The
+ * stacks are int arrays, so queuing a node neither boxes it nor keeps an
+ * object alive. {@link BucketQueue} queues objects on top of this.
+ */
+public final class NodeQueue {
+    /** returned by {@link #poll()} when the queue is empty */
+    public static final int EMPTY = -1;
+
+    private final BucketQueue.TieBreak tieBreak;
+    private Level[] levels = new Level[64];
+    private int minF = Integer.MAX_VALUE;
+    private int size;
+    // range of f values pushed since the last clear
+    private int lowestF = Integer.MAX_VALUE;
+    private int highestF = -1;
+
+    public NodeQueue(BucketQueue.TieBreak tieBreak) {
+        this.tieBreak = tieBreak;
+    }
+
+    public BucketQueue.TieBreak getTieBreak() {
+        return tieBreak;
+    }
+
+    /**
+     * Queue a node
+     * @param node index of the node
+     * @param f its priority; must be non-negative
+     * @param g cost so far, used by HIGH_G
+     * @param h heuristic estimate, used by LOW_H
+     */
+    public void push(int node, int f, int g, int h) {
+        if(f >= levels.length) {
+            levels = Arrays.copyOf(levels, Math.max(f + 1, levels.length << 1));
+        }
+        Level level = levels[f];
+        if(level == null) {
+            level = new Level();
+            levels[f] = level;
+        }
+        int secondary;
+        switch(tieBreak) {
+            case LOW_H: secondary = h;
+                break;
+            case HIGH_G: secondary = g;
+                break;
+            default: secondary = 0;
+                break;
+        }
+        level.push(node, secondary, tieBreak == BucketQueue.TieBreak.HIGH_G);
+        if(f < minF) {
+            minF = f;
+        }
+        if(f < lowestF) {
+            lowestF = f;
+        }
+        if(f > highestF) {
+            highestF = f;
+        }
+        size++;
+    }
+
+    /**
+     * Remove and return a node with the lowest f, ties broken by the policy
+     * @return the node, or EMPTY if the queue is empty
+     */
+    public int poll() {
+        if(size == 0) {
+            return EMPTY;
+        }
+        while(levels[minF] == null || levels[minF].count == 0) {
+            minF++;
+        }
+        size--;
+        int node = levels[minF].pop(tieBreak == BucketQueue.TieBreak.HIGH_G);
+        if(size == 0) {
+            minF = Integer.MAX_VALUE;
+        }
+        return node;
+    }
+
+    /**
+     * @return the lowest f currently queued, or -1 if the queue is empty
+     */
+    public int peekF() {
+        if(size == 0) {
+            return -1;
+        }
+        while(levels[minF] == null || levels[minF].count == 0) {
+            minF++;
+        }
+        return minF;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empty the queue, keeping the bucket storage for the next search. Only
+     * the buckets used since the last clear are visited, so an emptied queue
+     * clears in constant time.
+     */
+    public void clear() {
+        if(size > 0) {
+            for(int f = lowestF; f <= highestF; f++) {
+                Level level = levels[f];
+                if(level != null && level.count > 0) {
+                    level.clear();
+                }
+            }
+        }
+        size = 0;
+        minF = Integer.MAX_VALUE;
+        lowestF = Integer.MAX_VALUE;
+        highestF = -1;
+    }
+
+    /**
+     * All nodes sharing one f value, stacked by secondary key.
+     */
+    private static final class Level {
+        private int[][] stacks = new int[16][];
+        private int[] sizes = new int[16];
+        private int count;
+        /** lowest (or, when descending, highest) secondary key that may be non-empty */
+        private int cursor = -1;
+        // range of secondary keys pushed since the last clear
+        private int lowest = Integer.MAX_VALUE;
+        private int highest = -1;
+
+        void push(int node, int secondary, boolean descending) {
+            if(secondary >= stacks.length) {
+                int length = Math.max(secondary + 1, stacks.length << 1);
+                stacks = Arrays.copyOf(stacks, length);
+                sizes = Arrays.copyOf(sizes, length);
+            }
+            int[] stack = stacks[secondary];
+            int n = sizes[secondary];
+            if(stack == null) {
+                stack = new int[8];
+                stacks[secondary] = stack;
+            }
+            else if(n == stack.length) {
+                stack = Arrays.copyOf(stack, n << 1);
+                stacks[secondary] = stack;
+            }
+            stack[n] = node;
+            sizes[secondary] = n + 1;
+
+            if(count == 0 || (descending ? secondary > cursor : secondary < cursor)) {
+                cursor = secondary;
+            }
+            if(secondary < lowest) {
+                lowest = secondary;
+            }
+            if(secondary > highest) {
+                highest = secondary;
+            }
+            count++;
+        }
+
+        int pop(boolean descending) {
+            while(sizes[cursor] == 0) {
+                cursor += descending ? -1 : 1;
+            }
+            count--;
+            return stacks[cursor][--sizes[cursor]];
+        }
+
+        void clear() {
+            for(int s = lowest; s <= highest; s++) {
+                sizes[s] = 0;
+            }
+            count = 0;
+            lowest = Integer.MAX_VALUE;
+            highest = -1;
+        }
+    }
+}
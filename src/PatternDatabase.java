@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Additive disjoint pattern-database heuristic.
+ *
+ * The tiles are split into disjoint groups. For each group a table gives the
+ * fewest moves of that group's tiles needed to bring them home, from any
+ * placement of the group, with every other tile treated as indistinguishable.
+ * The tables are built by a backward breadth-first search from the goal in which
+ * only moves of the group's own tiles cost anything, so the table values of
+ * different groups can be summed and still never overestimate.
+ *
+ * A group's table is indexed by the cells of its tiles written as base-cells
+ * digits, which wastes some entries but keeps lookups to multiplies and adds.
+ * Only packed sizes (up to 4x4) are supported; the standard 4x4 database uses
+ * three groups of five tiles.
+ */
+public final class PatternDatabase {
+    public static final int[][] DEFAULT_GROUPS = {{1, 2, 3, 4}, {5, 6, 7, 8}};
+
+    private static final int MAGIC = 0x50444232;
+    private static final int UNSET = 0xFF;
+    private static final int MAX_GROUP = 5;
+    private static final PatternDatabase[] STANDARD = new PatternDatabase[BoardSize.MAX_DIMENSION + 1];
+
+    private final BoardSize size;
+    private final int[][] groups;
+    private final byte[][] tables;
+    /** weight[tile] is the place value of the tile's cell in its group's table index */
+    private final int[] weight;
+
+    private PatternDatabase(BoardSize size, int[][] groups, byte[][] tables) {
+        this.size = size;
+        this.groups = groups;
+        this.tables = tables;
+        this.weight = new int[size.getCells()];
+        for(int[] group : groups) {
+            int w = 1;
+            for(int tile : group) {
+                weight[tile] = w;
+                w *= size.getCells();
+            }
+        }
+    }
+
+    /**
+     * The database for the default groups of a size, read from its file on first
+     * use. If the file is missing it is built and saved; if it cannot be saved the
+     * tables are still kept in memory.
+     * @param size board size; must be packed
+     */
+    public static PatternDatabase standard(BoardSize size) {
+        int n = size.getDimension();
+        PatternDatabase db = STANDARD[n];
+        if(db == null) {
+            synchronized(PatternDatabase.class) {
+                db = STANDARD[n];
+                if(db == null) {
+                    db = loadOrBuild(size, Paths.get(defaultPath(size)), defaultGroups(size));
+                    STANDARD[n] = db;
+                }
+            }
+        }
+        return db;
+    }
+
+    /**
+     * @return the standard database file name for a size, e.g. pattern-3x3.db
+     */
+    public static String defaultPath(BoardSize size) {
+        return "pattern-" + size + ".db";
+    }
+
+    /**
+     * DEFAULT_GROUPS for 3x3; for other sizes the tiles in order, cut into groups
+     * of at most five
+     */
+    public static int[][] defaultGroups(BoardSize size) {
+        if(size == BoardSize.EIGHT_PUZZLE) {
+            return DEFAULT_GROUPS;
+        }
+        int tiles = size.getCells() - 1;
+        int count = (tiles + MAX_GROUP - 1) / MAX_GROUP;
+        int[][] groups = new int[count][];
+        int tile = 1;
+        for(int g = 0; g < count; g++) {
+            groups[g] = new int[Math.min(MAX_GROUP, tiles - tile + 1)];
+            for(int i = 0; i < groups[g].length; i++) {
+                groups[g][i] = tile++;
+            }
+        }
+        return groups;
+    }
+
+    private static PatternDatabase loadOrBuild(BoardSize size, Path path, int[][] groups) {
+        if(Files.exists(path)) {
+            try {
+                PatternDatabase db = load(path);
+                if(db.size == size && Arrays.deepEquals(db.groups, groups)) {
+                    return db;
+                }
+            }
+            catch (IOException e) {
+                System.out.println("Pattern database " + path + " is unreadable, rebuilding it.");
+            }
+        }
+        PatternDatabase db = build(size, groups);
+        try {
+            db.save(path);
+        }
+        catch (IOException e) {
+            System.out.println("Could not save pattern database to " + path + ".");
+        }
+        return db;
+    }
+
+    /**
+     * Build the tables for a set of disjoint tile groups
+     * @param size board size; must be packed
+     * @param groups tile numbers of each group; together they should cover every tile
+     * @return the database
+     */
+    public static PatternDatabase build(BoardSize size, int[][] groups) {
+        if(!size.isPacked()) {
+            throw new IllegalArgumentException("Pattern databases support boards of up to 16 cells, not " + size);
+        }
+        byte[][] tables = new byte[groups.length][];
+        for(int i = 0; i < groups.length; i++) {
+            tables[i] = buildTable(size, groups[i]);
+        }
+        return new PatternDatabase(size, groups, tables);
+    }
+
+    public BoardSize getSize() {
+        return size;
+    }
+
+    /**
+     * Sum of the group costs for a packed state
+     * @param state packed board
+     * @return admissible estimate of the moves left
+     */
+    public int evaluate(long state) {
+        // cell of every tile, 4 bits per tile
+        long cells = 0;
+        for(int cell = 0; cell < weight.length; cell++) {
+            cells |= (long) cell << (BoardSize.tileAt(state, cell) << 2);
+        }
+
+        int total = 0;
+        for(int g = 0; g < groups.length; g++) {
+            int index = 0;
+            for(int tile : groups[g]) {
+                index += (int) ((cells >>> (tile << 2)) & 0xF) * weight[tile];
+            }
+            total += tables[g][index] & 0xFF;
+        }
+        return total;
+    }
+
+    public void save(Path path) throws IOException {
+        int bytes = 12;
+        for(int g = 0; g < groups.length; g++) {
+            bytes += 8 + groups[g].length + tables[g].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        buffer.putInt(MAGIC).putInt(size.getDimension()).putInt(groups.length);
+        for(int g = 0; g < groups.length; g++) {
+            buffer.putInt(groups[g].length).putInt(tables[g].length);
+            for(int tile : groups[g]) {
+                buffer.put((byte) tile);
+            }
+            buffer.put(tables[g]);
+        }
+        buffer.flip();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static PatternDatabase load(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if(buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            throw new IOException(path + " is not a pattern database");
+        }
+        BoardSize size;
+        try {
+            size = BoardSize.of(buffer.getInt());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException(path + " has an unsupported board size", e);
+        }
+        int count = buffer.getInt();
+        int[][] groups = new int[count][];
+        byte[][] tables = new byte[count][];
+        for(int g = 0; g < count; g++) {
+            int tiles = buffer.getInt();
+            int entries = buffer.getInt();
+            groups[g] = new int[tiles];
+            for(int i = 0; i < tiles; i++) {
+                groups[g][i] = buffer.get();
+            }
+            tables[g] = new byte[entries];
+            buffer.get(tables[g]);
+        }
+        return new PatternDatabase(size, groups, tables);
+    }
+
+    /**
+     * Backward search over (cells of the group's tiles, blank cell). Moving a
+     * group tile costs one and moving any other tile is free, so states are
+     * settled in layers of equal cost: free moves extend the current layer and
+     * paid moves feed the next one.
+     */
+    private static byte[] buildTable(BoardSize size, int[] group) {
+        int cells = size.getCells();
+        int k = group.length;
+        int patterns = 1;
+        for(int i = 0; i < k; i++) {
+            patterns *= cells;
+        }
+
+        byte[] cost = new byte[patterns * cells];
+        Arrays.fill(cost, (byte) UNSET);
+        int[] where = new int[k];
+
+        int goalPattern = 0;
+        int w = 1;
+        for(int tile : group) {
+            goalPattern += size.goalCell(tile) * w;
+            w *= cells;
+        }
+        int start = goalPattern * cells + size.goalCell(0);
+        cost[start] = 0;
+
+        int[] layer = {start};
+        int layerSize = 1;
+        int level = 0;
+        while(layerSize > 0) {
+            int[] next = new int[16];
+            int nextSize = 0;
+            for(int i = 0; i < layerSize; i++) {
+                int node = layer[i];
+                if((cost[node] & 0xFF) != level) {
+                    continue;
+                }
+                int pattern = node / cells;
+                int blank = node % cells;
+                int rest = pattern;
+                for(int j = 0; j < k; j++) {
+                    where[j] = rest % cells;
+                    rest /= cells;
+                }
+
+                for(int direction : size.legalMoves(blank)) {
+                    int target = size.target(blank, direction);
+                    int moved = -1;
+                    for(int j = 0; j < k; j++) {
+                        if(where[j] == target) {
+                            moved = j;
+                        }
+                    }
+
+                    int childPattern = pattern;
+                    int childCost = level;
+                    if(moved >= 0) {
+                        int place = 1;
+                        for(int j = 0; j < moved; j++) {
+                            place *= cells;
+                        }
+                        childPattern += (blank - target) * place;
+                        childCost++;
+                    }
+                    int child = childPattern * cells + target;
+                    if((cost[child] & 0xFF) <= childCost) {
+                        continue;
+                    }
+                    cost[child] = (byte) childCost;
+                    if(moved < 0) {
+                        if(layerSize == layer.length) {
+                            layer = Arrays.copyOf(layer, layerSize << 1);
+                        }
+                        layer[layerSize++] = child;
+                    }
+                    else {
+                        if(nextSize == next.length) {
+                            next = Arrays.copyOf(next, nextSize << 1);
+                        }
+                        next[nextSize++] = child;
+                    }
+                }
+            }
+            layer = next;
+            layerSize = nextSize;
+            level++;
+        }
+
+        // the heuristic does not know where the blank is, so take the best case
+        byte[] table = new byte[patterns];
+        Arrays.fill(table, (byte) UNSET);
+        for(int pattern = 0; pattern < patterns; pattern++) {
+            int best = UNSET;
+            for(int blank = 0; blank < cells; blank++) {
+                best = Math.min(best, cost[pattern * cells + blank] & 0xFF);
+            }
+            table[pattern] = (byte) best;
+        }
+        return table;
+    }
+}
@@ -1,31 +1,62 @@
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+/**
+ * A board to solve, the settings to solve it with, and the command-line front end.
+ *
+ * A Puzzle is not thread-safe: its board, settings and statistics belong to
+ * the thread using it, so confine each instance to one thread at a time or
+ * hand it over with a happens-before edge, such as completing a future.
+ * Separate instances may solve concurrently. A search takes its open list,
+ * closed table and interner from the calling thread's {@link SearchArena},
+ * and what instances share is safe to use from several threads: the distance
+ * database, the pattern databases and the walking distance tables are built
+ * once under a lock and only read afterwards, with lookups that write nothing,
+ * and a {@link SolutionCache} is synchronized. {@link #solveAsync} searches
+ * on a copy, so the instance it is called on stays usable while the search
+ * runs.
+ */
 public class Puzzle {
     private Board foundGoal = null;
     private Board interactiveBoard;
     private int maxNodes = Integer.MAX_VALUE;
     private long SEED = 1234;
     int bNodesVisited;
+    private int nodesVisited;
     // Seeding the random number generator so that it always returns the same stream of random numbers
     private Random randomNumGen = new Random(SEED);
     private boolean expExceedMax = false;
 
-    private static PriorityQueue<Board> queue = new PriorityQueue<>((a, b) -> {
-        if(a.getF() == b.getF()) {
-            return 0;
-        }
-        else if(a.getF() > b.getF()) {
-            return 1;
-        }
-        else {
-            return -1;
-        }
-    });
-    private HashMap<Board, Board> closed = new HashMap<>();
+    private BucketQueue.TieBreak tieBreak = BucketQueue.TieBreak.LOW_H;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private String beamHeuristic = "h2";
+    private long memoryLimit = SmaStar.DEFAULT_BUDGET;
+
+    // taken from the thread's search arena at the start of each search
+    private NodeQueue queue;
+    private static DistanceDatabase database;
+    private StateTable closed;
+    // ids for boards too large to pack, so they can be used as closed table keys
+    private StateInterner interner;
+    // beam search over boards too large to pack: the layer being built, and the
+    // last RecentStates.DEPTH beams, newest first
+    private Set<Board> beamLayer;
+    private ArrayDeque<Set<Board>> recentBeams;
+    private final SearchStats stats = new SearchStats();
+    private SolutionCache cache;
+    private SearchLimit limit = SearchLimit.NONE;
 
     public Puzzle() {
         this.interactiveBoard = new Board();
@@ -45,6 +76,89 @@ public class Puzzle {
         return this.maxNodes;
     }
 
+    public void setTieBreak(BucketQueue.TieBreak tieBreak) {
+        this.tieBreak = tieBreak;
+    }
+
+    public BucketQueue.TieBreak getTieBreak() {
+        return this.tieBreak;
+    }
+
+    /**
+     * @param threads number of worker threads used by parallel A*
+     */
+    public void setParallelism(int threads) {
+        this.parallelism = threads;
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * @param heuristicType heuristic used to rank boards in beam search
+     */
+    public void setBeamHeuristic(String heuristicType) {
+        this.beamHeuristic = heuristicType;
+    }
+
+    public String getBeamHeuristic() {
+        return this.beamHeuristic;
+    }
+
+    /**
+     * @param bytes memory the SMA* search tree may occupy
+     */
+    public void setMemoryLimit(long bytes) {
+        this.memoryLimit = bytes;
+    }
+
+    public long getMemoryLimit() {
+        return this.memoryLimit;
+    }
+
+    /**
+     * @param cache cache consulted and filled by {@link #solve}, or null for none
+     */
+    public void setSolutionCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    public SolutionCache getSolutionCache() {
+        return this.cache;
+    }
+
+    /**
+     * @return a fresh puzzle on the current board that keeps this puzzle's settings
+     */
+    public Puzzle newSearch() {
+        Puzzle p = new Puzzle(getInteractiveBoard(), getMaxNodes());
+        p.setTieBreak(getTieBreak());
+        p.setParallelism(getParallelism());
+        p.setBeamHeuristic(getBeamHeuristic());
+        p.setMemoryLimit(getMemoryLimit());
+        p.setSolutionCache(getSolutionCache());
+        return p;
+    }
+
+    /**
+     * @param limit deadline and cancellation for the searches this puzzle runs
+     */
+    public void setLimit(SearchLimit limit) {
+        this.limit = limit;
+    }
+
+    public SearchLimit getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * @return statistics of the last search run through solve
+     */
+    public SearchStats getStats() {
+        return this.stats;
+    }
+
     public Board getFoundGoal() {
         return this.foundGoal;
     }
@@ -66,69 +180,632 @@ public class Puzzle {
     }
 
     /**
-     * Solve the puzzle using the A* algorithm
+     * Solve the puzzle using the A* algorithm. Nodes are kept in the thread's
+     * node arena; Boards are only built for the solution path.
      * @return solved puzzle board
      */
     public Board solvePuzzleAStar(String heuristicType) {
-        queue.clear();
-        closed.clear();
+        prepareQueue();
+        resetClosed();
         getInteractiveBoard().setAlgorithmType("astar");
         getInteractiveBoard().setHeuristicType(heuristicType);
         Board board = getInteractiveBoard();
         board.setG(0);
+        if(!board.isSolvable()) {
+            return null;
+        }
 
-        queue.offer(board);
-        Board solutionBoard = null;
-        int nodesVisited = 0;
+        stats.setDetailed(true);
+        BoardSize size = board.getSize();
+        Heuristic heuristic = Heuristic.forSearch(size, heuristicType);
+        long heuristicStart = System.nanoTime();
+        int hStart = board.computeHeuristic();
+        stats.stopOnce(SearchStats.Phase.HEURISTIC, heuristicStart);
+        NodeArena nodes = SearchArena.current().nodes();
+        long startKey = key(board);
+        long goalKey = key(goalBoard());
+        queue.push(nodes.add(startKey, 0, hStart, NodeArena.NONE, -1), hStart, 0, hStart);
+        closed.put(startKey, 0, StateTable.NO_PARENT);
+        int solution = NodeArena.NONE;
+        nodesVisited = 0;
+
+        // successors of the node being expanded
+        long[] childKeys = new long[4];
+        int[] childH = new int[4];
+        int[] childMoves = new int[4];
+        // tiles of the node being expanded and of one successor, for boards too large to pack
+        byte[] tiles = size.isPacked() ? null : new byte[size.getCells()];
+        byte[] moved = size.isPacked() ? null : new byte[size.getCells()];
 
         while(!queue.isEmpty()) {
-            Board current = queue.poll();
+            long pollStart = stats.start();
+            int current = queue.poll();
+            stats.stop(SearchStats.Phase.QUEUE, pollStart);
+            long currentKey = nodes.state(current);
+            int g = nodes.g(current);
+
+            // a cheaper path to this board was queued after this one
+            if(g > closed.getG(currentKey)) {
+                continue;
+            }
 
-            if(nodesVisited > getMaxNodes()) {
+            if(nodesVisited > getMaxNodes() || limit.shouldStop(nodesVisited)) {
                 return null;
             }
 
             nodesVisited++;
-            if(current.computeHeuristic() == 0) {
-                solutionBoard = current;
+            stats.expanded();
+            if(currentKey == goalKey) {
+                solution = current;
                 break;
             }
 
             // get all the next possible board positions
-            ArrayList<Board> children = current.getValidChildren();
-            for(Board child : children) {
-                boolean addToQueue = true;
-
-                if(closed.containsKey(child)) {
-                    Board duplicateBoard = closed.get(child);
-                    if(duplicateBoard.getF() < child.getF()) {
-                        addToQueue = false;
+            long expandStart = stats.start();
+            int h = nodes.h(current);
+            int children = 0;
+            if(tiles == null) {
+                int blank = size.blank(currentKey);
+                for(int direction : size.legalMoves(blank)) {
+                    int target = size.target(blank, direction);
+                    long child = size.move(currentKey, direction);
+                    childKeys[children] = child;
+                    childH[children] = heuristic.update(size, h, child, BoardSize.tileAt(currentKey, target), target, blank);
+                    childMoves[children++] = direction;
+                }
+            }
+            else {
+                interner.copyTo(currentKey, tiles);
+                int blank = 0;
+                while(tiles[blank] != 0) {
+                    blank++;
+                }
+                for(int direction : size.legalMoves(blank)) {
+                    int target = size.target(blank, direction);
+                    System.arraycopy(tiles, 0, moved, 0, tiles.length);
+                    moved[blank] = moved[target];
+                    moved[target] = 0;
+                    childH[children] = heuristic.update(size, h, moved, tiles[target], target, blank);
+                    childKeys[children] = interner.intern(moved);
+                    childMoves[children++] = direction;
+                }
+            }
+            stats.stop(SearchStats.Phase.EXPANSION, expandStart);
+            stats.generated(children);
+
+            long pushStart = stats.start();
+            for(int i = 0; i < children; i++) {
+                // only queue boards we have never seen, or have now reached more cheaply
+                int known = closed.size();
+                if(closed.offer(childKeys[i], g + 1, currentKey)) {
+                    if(closed.size() == known) {
+                        stats.reopened();
                     }
+                    int child = nodes.add(childKeys[i], g + 1, childH[i], current, childMoves[i]);
+                    queue.push(child, g + 1 + childH[i], g + 1, childH[i]);
                 }
-
-                // if this is our first time encountering this board position,
-                // or this board has a lower cost estimate, add it to the queue
-                if(addToQueue) {
-                    queue.offer(child);
+                else {
+                    stats.duplicate();
                 }
             }
-            closed.put(current, current);
+            stats.stop(SearchStats.Phase.QUEUE, pushStart);
+            stats.observeOpen(queue.size());
+        }
+        stats.observeClosed(closed.size());
+        if(solution == NodeArena.NONE) {
+            return null;
+        }
+        return replay(board, nodes.path(solution));
+    }
+
+    /**
+     * Solve the puzzle using anytime weighted A*, which finds a solution quickly
+     * and then improves it until it is optimal or the deadline passes
+     * @param weight weight on h for the first pass
+     * @param deadline System.nanoTime() at which to stop
+     * @param listener told about each improved solution; may be null
+     * @return solved puzzle board, whose parent chain is the best solution path
+     */
+    public Board solvePuzzleAnytime(String heuristicType, double weight, long deadline, AnytimeAStar.Listener listener) {
+        Board board = getInteractiveBoard();
+        if(!board.getSize().isPacked()) {
+            throw new IllegalArgumentException("Anytime A* supports boards up to 4x4.");
+        }
+        board.setAlgorithmType("astar");
+        board.setHeuristicType(heuristicType);
+        board.setG(0);
+
+        stats.setDetailed(true);
+        AnytimeAStar search = new AnytimeAStar(board.getSize(), heuristicType, weight, getMaxNodes(), stats);
+        search.setLimit(limit);
+        int[] moves = search.solve(board.getState(), deadline, listener);
+        nodesVisited = search.getNodesVisited();
+        setExpExceedMax(search.getExceedMax());
+        if(moves == null) {
+            return null;
+        }
+        return replay(board, moves);
+    }
+
+    /**
+     * Solve the current board with the named algorithm, as the solve command does
+     * @param algorithm "A-star", "A-star-par", "bidirectional", "IDA-star", "SMA-star", "beam" or "optimal"
+     * @param argument heuristic for the A* variants, beam width for beam, unused for optimal
+     * @return solved puzzle board, or null if the goal was not reached
+     * @throws IllegalArgumentException if the algorithm or its argument is not
+     * recognized, or the algorithm does not support the board size
+     * @throws UncheckedIOException if the distance database cannot be read
+     */
+    public Board solve(String algorithm, String argument) {
+        return measure(algorithm, argument, () -> {
+            Board solution = fromCache(algorithm, argument);
+            if(solution == null) {
+                solution = dispatch(algorithm, argument);
+                addToCache(solution, algorithm, argument);
+            }
+            return solution;
+        });
+    }
+
+    /**
+     * Solve the current board on another thread. The search runs on a copy
+     * of this puzzle with its own board, so this puzzle stays usable meanwhile.
+     * Cancelling the limit stops the search at its next check, and the future
+     * then completes normally with status CANCELLED and the search's
+     * statistics. Cancelling the future itself also cancels the limit, but the
+     * future is cancelled at once, as any future is, and the partial result is
+     * dropped.
+     * @param limit deadline and cooperative cancellation for the search
+     * @param executor runs the search
+     * @return the outcome; completes exceptionally with IllegalArgumentException
+     * as {@link #solve} throws it
+     */
+    public CompletableFuture<SolveResult> solveAsync(String algorithm, String argument, SearchLimit limit,
+                                                     Executor executor) {
+        Puzzle search = newSearch();
+        Board board = getInteractiveBoard();
+        search.setInteractiveBoard(board.getSize().isPacked() ? new Board(board.getSize(), board.getState())
+                : new Board(board.getSize(), board.tileArray()));
+        search.setLimit(limit);
+        SolveFuture future = new SolveFuture(limit);
+        executor.execute(() -> {
+            try {
+                Board solution = search.solve(algorithm, argument);
+                future.complete(new SolveResult(search.status(solution), solution, search.getStats()));
+            }
+            catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * The future solveAsync returns: cancelling it also cancels the search's
+     * limit, so the abandoned search stops at its next check.
+     */
+    private static final class SolveFuture extends CompletableFuture<SolveResult> {
+        private final SearchLimit limit;
+
+        SolveFuture(SearchLimit limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if(cancelled) {
+                limit.cancel();
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * Solve the current board on the common pool
+     * @param millis wall-clock time allowed, or 0 for no deadline
+     */
+    public CompletableFuture<SolveResult> solveAsync(String algorithm, String argument, long millis) {
+        return solveAsync(algorithm, argument, SearchLimit.of(millis), ForkJoinPool.commonPool());
+    }
+
+    private SolveResult.Status status(Board solution) {
+        if(solution != null) {
+            return SolveResult.Status.SOLVED;
+        }
+        if(limit.isCancelled()) {
+            return SolveResult.Status.CANCELLED;
+        }
+        return limit.isTimedOut() ? SolveResult.Status.TIMED_OUT : SolveResult.Status.NOT_FOUND;
+    }
+
+    /**
+     * Solve the current board with anytime A*, as the anytime command does. The
+     * answer depends on the deadline, so it is not cached.
+     * @param heuristicType heuristic label
+     * @param weight weight of the first pass
+     * @param millis wall-clock time allowed
+     * @param listener told about each improved solution; may be null
+     * @return the best solution found in time, or null if there was none
+     * @throws IllegalArgumentException if the heuristic or weight is not
+     * recognized, or the board is too large to pack
+     */
+    public Board solveAnytime(String heuristicType, double weight, long millis, AnytimeAStar.Listener listener) {
+        long deadline = System.nanoTime() + millis * 1000000L;
+        return measure("ARA-star", heuristicType,
+                () -> solvePuzzleAnytime(checkHeuristic(heuristicType), weight, deadline, listener));
+    }
+
+    /**
+     * Run a solve, recording its statistics and solve event
+     */
+    private Board measure(String algorithm, String argument, Supplier<Board> search) {
+        SolveEvent event = new SolveEvent();
+        String startState = event.isEnabled() ? getInteractiveBoard().getStateString() : null;
+        event.begin();
+        stats.begin(algorithm, argument);
+        Board solution = null;
+        try {
+            solution = search.get();
+            return solution;
+        }
+        finally {
+            if(!stats.isDetailed()) {
+                stats.setExpanded(getNodesVisited());
+            }
+            stats.end(solution == null ? -1 : pathLength(solution));
+            event.end();
+            if(event.shouldCommit()) {
+                event.fill(stats, startState);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * @return the cached solution for the current board, or null if there is no cache or no entry
+     */
+    private Board fromCache(String algorithm, String argument) {
+        Board board = getInteractiveBoard();
+        if(cache == null || !board.getSize().isPacked()) {
+            return null;
+        }
+        int[] moves = cache.get(board.getSize(), board.getState(), algorithm, cacheArgument(algorithm, argument));
+        if(moves == null) {
+            return null;
         }
-        return solutionBoard;
+        nodesVisited = 0;
+        stats.setCached(true);
+        // children only record their parent once the board is set up for a search
+        board.setAlgorithmType("astar");
+        board.setHeuristicType("h2");
+        board.setG(0);
+        return replay(board, moves);
+    }
+
+    private void addToCache(Board solution, String algorithm, String argument) {
+        if(cache == null || solution == null || !solution.getSize().isPacked()) {
+            return;
+        }
+        int length = pathLength(solution);
+        if(length == 0) {
+            return;
+        }
+        long[] states = new long[length];
+        int[] moves = new int[length];
+        Board b = solution;
+        for(int i = length - 1; i >= 0; i--) {
+            moves[i] = BoardSize.direction(b.getDirectionMoved());
+            b = b.getParent();
+            states[i] = b.getState();
+        }
+        cache.put(solution.getSize(), states, moves, algorithm, cacheArgument(algorithm, argument));
+    }
+
+    /**
+     * @return everything besides the algorithm and the board that decides the solution
+     */
+    private String cacheArgument(String algorithm, String argument) {
+        return algorithm.equals("beam") ? argument + " " + getBeamHeuristic() : argument;
+    }
+
+    /**
+     * Apply moves to a board
+     * @param moves directions, as BoardSize.UP to BoardSize.RIGHT
+     * @return the last board, whose parent chain is the path
+     */
+    private static Board replay(Board start, int[] moves) {
+        Board current = start;
+        for(int direction : moves) {
+            current = current.move(BoardSize.DIRECTION_NAMES[direction]);
+        }
+        return current;
+    }
+
+    /**
+     * @return number of moves along a board's parent chain
+     */
+    static int pathLength(Board solution) {
+        int moves = 0;
+        for(Board b = solution; b.getParent() != null; b = b.getParent()) {
+            moves++;
+        }
+        return moves;
+    }
+
+    private Board dispatch(String algorithm, String argument) {
+        BoardSize size = getInteractiveBoard().getSize();
+        switch(algorithm) {
+            case "beam":
+                if(argument == null) {
+                    throw new IllegalArgumentException("Missing beam width.");
+                }
+                return beamSearch(Integer.parseInt(argument), checkHeuristic(getBeamHeuristic()));
+            case "A-star":
+                return solvePuzzleAStar(checkHeuristic(argument));
+            case "A-star-par":
+                if(!size.isPacked()) {
+                    throw new IllegalArgumentException("Parallel A* supports boards up to 4x4.");
+                }
+                return solvePuzzleParallelAStar(checkHeuristic(argument), getParallelism());
+            case "bidirectional":
+                if(!size.isPacked()) {
+                    throw new IllegalArgumentException("Bidirectional search supports boards up to 4x4.");
+                }
+                return solvePuzzleBidirectional(checkHeuristic(argument));
+            case "IDA-star":
+                if(!size.isPacked()) {
+                    throw new IllegalArgumentException("IDA* supports boards up to 4x4.");
+                }
+                return solvePuzzleIDAStar(checkHeuristic(argument));
+            case "SMA-star":
+                if(!size.isPacked()) {
+                    throw new IllegalArgumentException("SMA* supports boards up to 4x4.");
+                }
+                return solvePuzzleSMAStar(checkHeuristic(argument));
+            case "optimal":
+                if(size != BoardSize.EIGHT_PUZZLE) {
+                    throw new IllegalArgumentException("The distance database only covers 3x3 boards.");
+                }
+                try {
+                    return solvePuzzleOptimal();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            default:
+                throw new IllegalArgumentException("Search algorithm not recognized. Check spelling.");
+        }
+    }
+
+    /**
+     * @return the description printed when solving with an algorithm, or null if it is not recognized
+     */
+    public static String algorithmLabel(String algorithm) {
+        switch(algorithm) {
+            case "beam": return "Beam search algorithm";
+            case "A-star": return "A* algorithm";
+            case "A-star-par": return "parallel A* algorithm";
+            case "bidirectional": return "bidirectional A* algorithm";
+            case "IDA-star": return "IDA* algorithm";
+            case "SMA-star": return "memory-bounded A* algorithm";
+            case "optimal": return "the distance database";
+            default: return null;
+        }
+    }
+
+    private static String checkHeuristic(String heuristic) {
+        if(heuristic == null) {
+            throw new IllegalArgumentException("Missing heuristic.");
+        }
+        if(Heuristic.fromLabel(heuristic) == null) {
+            throw new IllegalArgumentException("Heuristic not recognized. Use h1, h2, h3, h4 or h5.");
+        }
+        return heuristic;
+    }
+
+    /**
+     * @return nodes expanded by the last solve (path length for the distance database)
+     */
+    public int getNodesVisited() {
+        return this.nodesVisited;
+    }
+
+    /**
+     * Solve the puzzle using hash-distributed A* on several threads
+     * @param threads number of worker threads
+     * @return solved puzzle board, whose parent chain is the solution path
+     */
+    public Board solvePuzzleParallelAStar(String heuristicType, int threads) {
+        Board board = getInteractiveBoard();
+        board.setAlgorithmType("astar");
+        board.setHeuristicType(heuristicType);
+        board.setG(0);
+
+        ParallelAStar search = new ParallelAStar(board.getSize(), heuristicType, threads, getMaxNodes());
+        search.setLimit(limit);
+        int[] moves = search.solve(board.getState());
+        nodesVisited = (int) Math.min(Integer.MAX_VALUE, search.getNodesVisited());
+        if(moves == null) {
+            return null;
+        }
+
+        return replay(board, moves);
+    }
+
+    /**
+     * Solve the puzzle by searching forward from the board and backward from the
+     * goal at the same time until the two frontiers provably meet on an optimal path
+     * @return solved puzzle board, whose parent chain is the solution path
+     */
+    public Board solvePuzzleBidirectional(String heuristicType) {
+        Board board = getInteractiveBoard();
+        board.setAlgorithmType("bidirectional");
+        board.setHeuristicType(heuristicType);
+        board.setG(0);
+
+        BidirectionalSearch search = new BidirectionalSearch(board.getSize(), heuristicType, getMaxNodes());
+        search.setLimit(limit);
+        int[] moves = search.solve(board.getState());
+        nodesVisited = search.getNodesVisited();
+        if(moves == null) {
+            return null;
+        }
+
+        // the joined path runs start to goal, so replaying it rebuilds the board chain
+        return replay(board, moves);
+    }
+
+    /**
+     * Solve the puzzle using IDA*, which keeps only the current path in memory
+     * @return solved puzzle board, whose parent chain is the solution path
+     */
+    public Board solvePuzzleIDAStar(String heuristicType) {
+        Board board = getInteractiveBoard();
+        board.setAlgorithmType("idastar");
+        board.setHeuristicType(heuristicType);
+        board.setG(0);
+
+        IdaStar search = new IdaStar(board.getSize(), heuristicType, getMaxNodes());
+        search.setLimit(limit);
+        int[] moves = search.solve(board.getState());
+        nodesVisited = search.getNodesVisited();
+        if(moves == null) {
+            return null;
+        }
+
+        // replay the path found by the search to rebuild the board chain
+        return replay(board, moves);
+    }
+
+    /**
+     * Solve the puzzle using SMA*, which keeps its search tree within the memory
+     * limit by forgetting the least promising leaves
+     * @return solved puzzle board, whose parent chain is the solution path
+     */
+    public Board solvePuzzleSMAStar(String heuristicType) {
+        Board board = getInteractiveBoard();
+        board.setAlgorithmType("smastar");
+        board.setHeuristicType(heuristicType);
+        board.setG(0);
+
+        SmaStar search = new SmaStar(board.getSize(), heuristicType, getMaxNodes(), getMemoryLimit());
+        search.setLimit(limit);
+        int[] moves = search.solve(board.getState());
+        nodesVisited = search.getNodesVisited();
+        stats.setMemory(search.getPeakBytes(), search.getBudget());
+        if(moves == null) {
+            return null;
+        }
+        return replay(board, moves);
+    }
+
+    /**
+     * Solve a 3x3 puzzle optimally by walking the precomputed distance database,
+     * building the database file on first use
+     * @return solved puzzle board, whose parent chain is the solution path
+     * @throws IOException if the database cannot be read or written
+     */
+    public Board solvePuzzleOptimal() throws IOException {
+        Board board = getInteractiveBoard();
+        board.setAlgorithmType("optimal");
+        board.setHeuristicType("h2");
+        board.setG(0);
+
+        int[] moves = getDatabase().solve(board.getState());
+        nodesVisited = moves == null ? 0 : moves.length;
+        if(moves == null) {
+            return null;
+        }
+
+        return replay(board, moves);
+    }
+
+    /**
+     * Rebuild the distance database file and map the new copy
+     * @return number of reachable states written
+     */
+    public static synchronized int rebuildDatabase() throws IOException {
+        int states = DistanceDatabase.build(DistanceDatabase.defaultPath());
+        database = DistanceDatabase.load(DistanceDatabase.defaultPath());
+        return states;
+    }
+
+    private static synchronized DistanceDatabase getDatabase() throws IOException {
+        if(database == null) {
+            database = DistanceDatabase.loadOrBuild(DistanceDatabase.defaultPath());
+        }
+        return database;
+    }
+
+    /**
+     * Closed table key for a board: the packed state when the board fits in a
+     * long, otherwise an id from this puzzle's interner
+     */
+    private long key(Board b) {
+        if(b.getSize().isPacked()) {
+            return b.getState();
+        }
+        return interner.intern(b.tileArray());
+    }
+
+    /**
+     * Take an empty closed table, and an interner for boards too large to
+     * pack, from the thread's search arena
+     */
+    private void resetClosed() {
+        SearchArena arena = SearchArena.current();
+        closed = arena.closed();
+        BoardSize size = getInteractiveBoard().getSize();
+        if(!size.isPacked()) {
+            interner = arena.interner(size.getCells());
+        }
+    }
+
+    /**
+     * @return a board of the current size in its goal configuration
+     */
+    private Board goalBoard() {
+        return Board.goal(getInteractiveBoard().getSize());
+    }
+
+    /**
+     * @return the closed table filled by the last A* search, valid until
+     * the next search on the same thread; null before the first
+     */
+    public StateTable getClosed() {
+        return this.closed;
     }
 
     public Board beamSearch(int k) {
+        return beamSearch(k, "h2");
+    }
+
+    /**
+     * Beam search keeping the k best boards of each layer. A successor is
+     * dropped if another successor in its layer, or a recent beam, already
+     * holds its board, as {@link RecentStates} does for packed boards.
+     * @param heuristicType heuristic used to rank the boards
+     * @return solved puzzle board, or null if the goal was not reached
+     */
+    public Board beamSearch(int k, String heuristicType) {
         bNodesVisited = 0;
+        stats.setDetailed(true);
         getInteractiveBoard().setAlgorithmType("beam");
-        getInteractiveBoard().setHeuristicType("h2");
+        getInteractiveBoard().setHeuristicType(heuristicType);
         setFoundGoal(null);
         setExpExceedMax(false);
-        queue.clear();
+        if(getInteractiveBoard().getSize().isPacked()) {
+            return beamSearchPacked(k, heuristicType);
+        }
+        beamLayer = new HashSet<>();
+        recentBeams = new ArrayDeque<>();
+        rememberBeam(Collections.singletonList(getInteractiveBoard()));
         Board goal = null;
         ArrayList<Board> bestBoards;
-        ArrayList<Board> children = getInteractiveBoard().getValidChildren();
+        ArrayList<Board> children = unvisited(getInteractiveBoard().getValidChildren());
 
-        if(getInteractiveBoard().computeHeuristic() == 0) {
+        if(getInteractiveBoard().isGoal()) {
             return getInteractiveBoard();
         }
 
@@ -139,68 +816,154 @@ public class Puzzle {
         }
         // get the top k children
         else {
-            bestBoards = getKBestBoards(k, queue, children);
+            bestBoards = getKBestBoards(k, children);
         }
+        rememberBeam(bestBoards);
 
         // continuously generate successors based on the current top k nodes
         while(!bestBoards.isEmpty()) {
             // get all the children for the top k nodes
+            beamLayer.clear();
             ArrayList<Board> allSuccessors = generateAllSuccessors(bestBoards);
+            nodesVisited = bNodesVisited;
+            stats.observeOpen(allSuccessors.size());
+            stats.observeClosed(rememberedBoards());
             if(getExceedMax()) {
-                bNodesVisited = 0;
                 return null;
             }
 
             // found the goal, break
             if(getFoundGoal() != null) {
-                bNodesVisited = 0;
                 goal = getFoundGoal();
                 break;
             }
 
             // we did not find the goal yet, generate the next top k states and repeat
-            bestBoards = getKBestBoards(k, queue, allSuccessors);
+            long selectStart = stats.start();
+            bestBoards = getKBestBoards(k, allSuccessors);
+            rememberBeam(bestBoards);
+            stats.stop(SearchStats.Phase.QUEUE, selectStart);
         }
-
         return goal;
     }
 
-    public ArrayList<Board> getKBestBoards(int k, PriorityQueue<Board> q, ArrayList<Board> boards) {
-        ArrayList<Board> best = new ArrayList<>();
-        for(Board b : boards) {
-            q.offer(b);
+    /**
+     * Beam search over packed states, expanding each layer in parallel
+     * @return solved puzzle board, whose parent chain is the solution path
+     */
+    private Board beamSearchPacked(int k, String heuristicType) {
+        Board board = getInteractiveBoard();
+        BeamSearch search = new BeamSearch(board.getSize(), heuristicType, k, getMaxNodes(), stats,
+                SearchArena.current().recent());
+        search.setLimit(limit);
+        int[] moves = search.solve(board.getState());
+        bNodesVisited = search.getNodesVisited();
+        nodesVisited = bNodesVisited;
+        setExpExceedMax(search.getExceedMax());
+        if(moves == null) {
+            return null;
         }
+        setFoundGoal(replay(board, moves));
+        return getFoundGoal();
+    }
 
-        int count = 0;
-        while(count < k && !q.isEmpty()) {
-            Board current = q.poll();
-            best.add(current);
-            count++;
+    /**
+     * The k boards with the lowest f, best first. Beam boards all have g = 0,
+     * so every tie-breaking policy comes down to the board added last.
+     */
+    public ArrayList<Board> getKBestBoards(int k, ArrayList<Board> boards) {
+        long[] keys = new long[boards.size()];
+        for(int i = 0; i < keys.length; i++) {
+            keys[i] = (long) boards.get(i).getF() << 32 | (0xFFFFFFFFL - i);
+        }
+        int kept = TopK.smallest(keys, keys.length, k);
+        ArrayList<Board> best = new ArrayList<>(kept);
+        for(int j = 0; j < kept; j++) {
+            best.add(boards.get((int) (0xFFFFFFFFL - (keys[j] & 0xFFFFFFFFL))));
         }
-        q.clear();
         return best;
     }
 
+    /**
+     * Take an empty open list using this puzzle's tie-breaking policy from the
+     * thread's search arena
+     */
+    private void prepareQueue() {
+        queue = SearchArena.current().queue(getTieBreak());
+    }
+
     public ArrayList<Board> generateAllSuccessors(ArrayList<Board> oldBest) {
         ArrayList<Board> allBoards = new ArrayList<>();
 
         for(Board b : oldBest) {
 
-            if(bNodesVisited > getMaxNodes()) {
+            if(bNodesVisited > getMaxNodes() || limit.shouldStop(bNodesVisited)) {
                 setExpExceedMax(true);
+                break;
             }
 
             bNodesVisited++;
-            if(b.computeHeuristic() == 0) {
+            stats.expanded();
+            if(b.isGoal()) {
                 foundGoal = b;
                 break;
             }
-            ArrayList<Board> children = b.getValidChildren();
+            long expandStart = stats.start();
+            ArrayList<Board> successors = b.getValidChildren();
+            stats.stop(SearchStats.Phase.EXPANSION, expandStart);
+            stats.generated(successors.size());
+            ArrayList<Board> children = unvisited(successors);
             allBoards.addAll(children);
         }
         return allBoards;
     }
 
+    /**
+     * Drop the boards that this layer or a recent beam already holds,
+     * recording the rest in this layer.
+     * @param children successors of one beam node
+     * @return the children not seen before
+     */
+    private ArrayList<Board> unvisited(ArrayList<Board> children) {
+        ArrayList<Board> fresh = new ArrayList<>(children.size());
+        for(Board child : children) {
+            if(inRecentBeam(child) || !beamLayer.add(child)) {
+                stats.duplicate();
+            }
+            else {
+                fresh.add(child);
+            }
+        }
+        return fresh;
+    }
+
+    private boolean inRecentBeam(Board board) {
+        for(Set<Board> beam : recentBeams) {
+            if(beam.contains(board)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remember a beam for the duplicate checks, forgetting the oldest
+     */
+    private void rememberBeam(List<Board> beam) {
+        recentBeams.addFirst(new HashSet<>(beam));
+        if(recentBeams.size() > RecentStates.DEPTH) {
+            recentBeams.removeLast();
+        }
+    }
+
+    private int rememberedBoards() {
+        int count = beamLayer.size();
+        for(Set<Board> beam : recentBeams) {
+            count += beam.size();
+        }
+        return count;
+    }
+
     public void generateNRandomMoves(int numMoves, int seed) {
         String[] directions = {"left", "right", "up", "down"};
         int count = numMoves;
@@ -220,6 +983,15 @@ public class Puzzle {
     }
 
     public void printSolution(Board solvedBoard) {
+        printSolution(solvedBoard, System.out);
+    }
+
+    /**
+     * Print the number of moves in a solution followed by its directions
+     * @param solvedBoard goal board at the end of the solution's parent chain
+     * @param out stream to print to
+     */
+    public void printSolution(Board solvedBoard, PrintStream out) {
         ArrayList<String> directions = new ArrayList<>();
 
         while(solvedBoard != null) {
@@ -231,10 +1003,10 @@ public class Puzzle {
 
         Collections.reverse(directions);
         int numMoves = directions.size();
-        System.out.println();
-        System.out.println("Number of moves made to solve: " + String.valueOf(numMoves));
+        out.println();
+        out.println("Number of moves made to solve: " + String.valueOf(numMoves));
         for(String d : directions) {
-            System.out.println(d);
+            out.println(d);
         }
     }
 
@@ -254,29 +1026,18 @@ public class Puzzle {
     }
 
     public ArrayList<Double> expAstarH1() {
-        double numSolved = 0;
-        double NUM_MOVES = 100;
-        ArrayList<Double> fractions = new ArrayList<>();
-
-        for(int maxNodes = 1; maxNodes < 1050; maxNodes = maxNodes * 2) {
-            for(int numMoves = 1; numMoves < NUM_MOVES + 1; numMoves++) {
-                setMaxNodes(maxNodes);
-                setInteractiveBoard(new Board(Board.GOAL));
-                getInteractiveBoard().clearData();
-                generateNRandomMoves(numMoves, numMoves);
-                Board s = solvePuzzleAStar("h1");
-                if(s != null) {
-                    numSolved++;
-                }
-            }
-            fractions.add((numSolved/NUM_MOVES));
-            numSolved = 0;
-        }
-
-        return fractions;
+        return expAstar("h1");
     }
 
     public ArrayList<Double> expAstarH2() {
+        return expAstar("h2");
+    }
+
+    /**
+     * Fraction of random puzzles A* solves with the heuristic, for node limits
+     * doubling from 1 to 1024
+     */
+    public ArrayList<Double> expAstar(String heuristicType) {
         double numSolved = 0;
         double NUM_MOVES = 100;
         ArrayList<Double> fractions = new ArrayList<>();
@@ -284,10 +1045,10 @@ public class Puzzle {
         for(int maxNodes = 1; maxNodes < 1050; maxNodes = maxNodes * 2) {
             for(int numMoves = 1; numMoves < NUM_MOVES + 1; numMoves++) {
                 setMaxNodes(maxNodes);
-                setInteractiveBoard(new Board(Board.GOAL));
+                setInteractiveBoard(goalBoard());
                 getInteractiveBoard().clearData();
                 generateNRandomMoves(numMoves, numMoves);
-                Board s = solvePuzzleAStar("h2");
+                Board s = solvePuzzleAStar(heuristicType);
                 if(s != null) {
                     numSolved++;
                 }
@@ -308,7 +1069,7 @@ public class Puzzle {
                 setExpExceedMax(false);
                 setMaxNodes(maxNodes);
                 getInteractiveBoard().clearData();
-                setInteractiveBoard(new Board(Board.GOAL));
+                setInteractiveBoard(goalBoard());
 
                 setFoundGoal(null);
                 generateNRandomMoves(numMoves, numMoves);
@@ -324,109 +1085,155 @@ public class Puzzle {
         return fractions;
     }
 
+    /**
+     * A* with h1 and h2 on 25 random puzzles for each scramble depth from 5 to
+     * 100 moves, timed by {@link BenchmarkRunner}
+     */
     public void exp2Runtime() {
-        // in milliseconds
-        HashMap<Integer, Long> times1 = new HashMap<>();
-        HashMap<Integer, Long> times2 = new HashMap<>();
-
-        // run the algorithms... collect the times
-        int step = 0;
-        for(int numMoves = 5; numMoves < 105; numMoves += 5) {
-            for(int iterations = 0; iterations < 25; iterations++) {
-                setInteractiveBoard(new Board(Board.GOAL));
-                getInteractiveBoard().clearData();
-                generateNRandomMoves(numMoves, numMoves + iterations);
-
-                long startTime1 = System.nanoTime();
-                Board s1 = solvePuzzleAStar("h1");
-                long endTime1 = System.nanoTime();
-                long duration1 = (endTime1 - startTime1);
-
-                long startTime2 = System.nanoTime();
-                Board s2 = solvePuzzleAStar("h2");
-                long endTime2 = System.nanoTime();
-                long duration2 = (endTime2 - startTime2);
-
-                if(times1.get(step) == null) {
-                    times1.put(step,duration1);
-                    times2.put(step, duration2);
-                }
-                else {
-                    times1.put(step, times1.get(step) + duration1);
-                    times1.put(step, times1.get(step) + duration1);
-                }
-            }
-            step++;
-        }
-
-        // average the times
-        int count = 5;
+        List<String[]> algorithms = BenchmarkRunner.parseAlgorithms("A-star:h1,A-star:h2");
         String format = "%-40s %-40s %s %n";
-        for(Map.Entry<Integer, Long> e : times1.entrySet()) {
-            int key = e.getKey();
-            String desc = "Random Moves made = " + count;
-            String h1 = "H1: " + ((double) times1.get(key)/1000000)/25;
-            String h2 = "H2: " + ((double)times2.get(key)/1000000)/25;
+        for(int numMoves = 5; numMoves < 105; numMoves += 5) {
+            BenchmarkRunner runner = new BenchmarkRunner(algorithms,
+                    BenchmarkRunner.corpus(goalBoard().getSize(), 25, numMoves, numMoves));
+            runner.setWarmup(1);
+            runner.setIterations(1);
+            runner.setMaxNodes(getMaxNodes());
+            List<BenchmarkRunner.Result> results = runner.run(null);
+            String desc = "Random Moves made = " + numMoves;
+            String h1 = String.format("H1: p50 %.3f ms, p99 %.3f ms", results.get(0).percentile(0.50) / 1e6,
+                    results.get(0).percentile(0.99) / 1e6);
+            String h2 = String.format("H2: p50 %.3f ms, p99 %.3f ms", results.get(1).percentile(0.50) / 1e6,
+                    results.get(1).percentile(0.99) / 1e6);
             System.out.printf(format, desc, h1, h2);
-            count+=5;
         }
     }
 
+    /**
+     * Average solution length of A* with h1 and h2 (3000 node limit) and beam
+     * search for puzzles scrambled by 5 to 35 moves, over the instances each
+     * one solved
+     */
     public void expC() {
-        HashMap<Integer, Integer> sLength1 = new HashMap<>();
-        HashMap<Integer, Integer> sLength2 = new HashMap<>();
-        HashMap<Integer, Integer> sLength3 = new HashMap<>();
+        int steps = 7;
+        int[][] lengths = new int[3][steps];
+        int[][] solved = new int[3][steps];
 
         setMaxNodes(3000);
 
-        // run the algorithms... collect the times
-        int step = 0;
-        int denominator = 5;
-
-        for(int numMoves = 5; numMoves < 40; numMoves += 5) {
+        for(int step = 0; step < steps; step++) {
+            int numMoves = 5 + step * 5;
             for(int iterations = 0; iterations < 5; iterations++) {
-                setInteractiveBoard(new Board(Board.GOAL));
+                setInteractiveBoard(goalBoard());
                 getInteractiveBoard().clearData();
                 generateNRandomMoves(numMoves, numMoves + iterations);
 
-                Board s1 = solvePuzzleAStar("h1");
-                Board s2 = solvePuzzleAStar("h2");
-                Board s3 = beamSearch(910);
-                int beamSolutionLength = 0;
-                Board b = s3;
-                while(b != null) {
-                    beamSolutionLength++;
-                    b = b.getParent();
+                Board[] solutions = {solvePuzzleAStar("h1"), solvePuzzleAStar("h2"), beamSearch(910)};
+                for(int j = 0; j < solutions.length; j++) {
+                    // A* gives up at the node limit and beam search can run dry
+                    if(solutions[j] != null) {
+                        lengths[j][step] += pathLength(solutions[j]);
+                        solved[j][step]++;
+                    }
                 }
+            }
+        }
+
+        String[] names = {"H1", "H2", "Beam"};
+        String format = "%-40s %-40s %-40s %s %n";
+        for(int step = 0; step < steps; step++) {
+            String[] columns = new String[names.length];
+            for(int j = 0; j < names.length; j++) {
+                columns[j] = names[j] + ": " + (solved[j][step] == 0 ? "not solved"
+                        : (double) lengths[j][step] / solved[j][step]
+                        + (solved[j][step] < 5 ? " (" + solved[j][step] + " of 5 solved)" : ""));
+            }
+            System.out.printf(format, "Random Moves made = " + (5 + step * 5), columns[0], columns[1], columns[2]);
+        }
+    }
 
-                if(sLength1.get(step) == null) {
-                    sLength1.put(step, s1.getG());
-                    sLength2.put(step, s2.getG());
-                    sLength3.put(step, beamSolutionLength);
+    /**
+     * Compare the nodes A* expands with each heuristic against h2, on 724 5b6 831
+     * and on random 3x3 puzzles scrambled by 100 to 149 moves
+     */
+    public void expHeuristics() {
+        String[] heuristics = {"h2", "h3", "h4", "h5"};
+        long[] expanded = new long[heuristics.length];
+        int[] length = new int[heuristics.length];
+        int instances = 51;
+        setMaxNodes(Integer.MAX_VALUE);
+
+        for(int i = 0; i < instances; i++) {
+            for(int j = 0; j < heuristics.length; j++) {
+                if(i == 0) {
+                    setInteractiveBoard(new Board());
+                    setBoardState("724 5b6 831");
                 }
                 else {
-                    sLength1.put(step, sLength1.get(step) + s1.getG());
-                    sLength2.put(step, sLength2.get(step) + s2.getG());
-                    sLength3.put(step, sLength3.get(step) + beamSolutionLength);
+                    setInteractiveBoard(Board.goal(BoardSize.EIGHT_PUZZLE));
+                    generateNRandomMoves(99 + i, 99 + i);
                 }
+                getInteractiveBoard().clearData();
+                Board s = solvePuzzleAStar(heuristics[j]);
+                expanded[j] += getNodesVisited();
+                length[j] += s == null ? 0 : s.getG();
             }
-            step++;
         }
 
-        // average the times
-        int count = 5;
-        String format = "%-40s %-40s %-40s %s %n";
-        for(Map.Entry<Integer, Integer> e : sLength1.entrySet()) {
-            int key = e.getKey();
-            String desc = "Random Moves made = " + count;
-            String h1 = "H1: " + (double)sLength1.get(key)/denominator;
-            String h2 = "H2: " + (double)sLength2.get(key)/denominator;
-            String beam = "Beam: " + (double)sLength3.get(key)/denominator;
-            System.out.printf(format, desc, h1, h2, beam);
-            count+=5;
+        String format = "%-6s %-30s %-30s %s %n";
+        for(int j = 0; j < heuristics.length; j++) {
+            String nodes = "Average nodes expanded: " + (double) expanded[j] / instances;
+            String ratio = "H2 ratio: " + String.format("%.2f", (double) expanded[0] / expanded[j]);
+            String moves = "Average moves: " + (double) length[j] / instances;
+            System.out.printf(format, heuristics[j].toUpperCase(), nodes, ratio, moves);
         }
     }
 
+    /**
+     * Handle "batch file algorithm [argument] [threads]": solve every state listed
+     * in the file (one per line) in parallel and print the results in file order
+     */
+    void runBatch(String[] inputs) {
+        String algorithm = inputs[2];
+        boolean takesArgument = !algorithm.equals("optimal");
+        String argument = takesArgument && inputs.length > 3 ? inputs[3] : null;
+        int threadIndex = takesArgument ? 4 : 3;
+        int threads = inputs.length > threadIndex ? Integer.parseInt(inputs[threadIndex])
+                : Runtime.getRuntime().availableProcessors();
+
+        List<Board> starts = new ArrayList<>();
+        try(Stream<String> lines = Files.lines(Paths.get(inputs[1]))) {
+            lines.map(String::trim).filter(line -> !line.isEmpty()).forEach(line -> {
+                Board b = new Board();
+                b.setState(line);
+                starts.add(b);
+            });
+        }
+        catch (IOException e) {
+            System.out.println("Error attempting to read file. Check path");
+            return;
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("Board state is invalid. Check state again.");
+            return;
+        }
+
+        System.out.println("Solving " + starts.size() + " puzzles on " + threads + " threads....");
+        BatchSolver solver = new BatchSolver(algorithm, argument, getMaxNodes(), getTieBreak(), threads);
+        long start = System.nanoTime();
+        List<BatchSolver.Result> results = solver.solveAll(starts);
+        long elapsed = System.nanoTime() - start;
+
+        int solved = 0;
+        for(BatchSolver.Result r : results) {
+            System.out.println(r);
+            if(r.isSolved()) {
+                solved++;
+            }
+        }
+        System.out.printf("Solved %d of %d in %.1f ms (%.1f puzzles/s)%n", solved, results.size(),
+                elapsed / 1e6, results.size() / (elapsed / 1e9));
+    }
+
     /**
      * Read commands from a text file
      * @param fileName
@@ -434,155 +1241,83 @@ public class Puzzle {
      */
     public Queue<String> readCommandsFromFile(String fileName) throws IOException {
         Queue<String> lines = new LinkedList<>();
-        Stream<String> stream = Files.lines(Paths.get(fileName));
-        stream.forEach(lines::add);
-
+        try(Stream<String> stream = Files.lines(Paths.get(fileName))) {
+            stream.forEach(lines::add);
+        }
         return lines;
     }
 
-
-
     public static void main(String[] args) {
-        Puzzle p = new Puzzle();
-        Queue<String> commandList = new LinkedList<>();
-        boolean readingFile = false;
-        boolean start = true;
-        String inputString;
-        Board solution;
-
-        Scanner s = new Scanner(System.in);
-        while(true) {
-            if(args.length > 0 && args[0].split(" ")[0].equals("-r") && start) {
-                String fileName = args[0].split(" ")[1];
-                readingFile = true;
-                try {
-                    commandList = p.readCommandsFromFile(fileName);
+        // -server [port] [threads] and -client [port] [file] hand over to the solver daemon
+        String[] options = String.join(" ", args).trim().split(" +");
+        if(options[0].equals("-server") || options[0].equals("-client")) {
+            String[] rest = Arrays.copyOfRange(options, 1, options.length);
+            try {
+                if(options[0].equals("-server")) {
+                    SolverServer.main(rest);
                 }
-                catch (IOException e) {
-                    System.out.println("Error attempting to read file. Check path");
-                    e.printStackTrace();
+                else {
+                    SolverClient.main(rest);
                 }
             }
+            catch (IOException e) {
+                System.out.println("Error connecting to the solver server.");
+                e.printStackTrace();
+            }
+            return;
+        }
 
-            if(commandList.size() == 0 && readingFile) {
-                System.exit(1);
+        // -benchmark [key=value ...] runs the macro benchmarks; the exit status is 1 if any regressed
+        if(options[0].equals("-benchmark")) {
+            try {
+                int regressions = BenchmarkRunner.run(Arrays.copyOfRange(options, 1, options.length), System.out);
+                if(regressions > 0) {
+                    System.exit(1);
+                }
+            }
+            catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                System.exit(2);
             }
+            catch (IOException e) {
+                System.out.println("Error writing or reading benchmark results.");
+                e.printStackTrace();
+                System.exit(2);
+            }
+            return;
+        }
 
-            if(readingFile) {
-                inputString = commandList.remove();
+        Puzzle p = new Puzzle();
+        p.setSolutionCache(new SolutionCache(SolutionCache.DEFAULT_CAPACITY));
+        CommandProcessor processor = new CommandProcessor(p, true);
+
+        // -r <file> [threads] streams a command file through the pipeline
+        if(options[0].equals("-r")) {
+            if(options.length < 2) {
+                System.out.println("Missing file name.");
+                return;
             }
-            else {
-                System.out.println("Enter a command:");
-                inputString = s.nextLine();
-            }
-
-
-            String[] inputs = inputString.split(" ");
-            String command = inputs[0];
-
-
-            switch(command) {
-                case "solve":
-                    String algorithm = inputs[1];
-                    String arg = inputs[2];
-                    switch (algorithm) {
-                        case "beam":
-                            p.setFoundGoal(null);
-                            p = new Puzzle(p.getInteractiveBoard(), p.getMaxNodes());
-                            int k = Integer.parseInt(arg);
-                            p.checkForNullBoard();
-                            System.out.println("Solving puzzle using Beam search algorithm....");
-                            solution = p.beamSearch(k);
-                            if(solution == null) {
-                                System.out.println("Finished without reaching goal.");
-                            }
-                            else {
-                                p.printSolution(solution);
-                                p.setInteractiveBoard(solution);
-                                p.getInteractiveBoard().clearData();
-                            }
-                            break;
-                        case "A-star":
-                            p = new Puzzle(p.getInteractiveBoard(), p.getMaxNodes());
-                            String heuristic = arg;
-                            p.checkForNullBoard();
-                            System.out.println("Solving puzzle using A* algorithm....");
-                            solution = p.solvePuzzleAStar(heuristic);
-                            if(solution == null) {
-                                System.out.println("Finished without reaching goal.");
-                            }
-                            else {
-                                p.printSolution(solution);
-                                p.setInteractiveBoard(solution);
-                                p.getInteractiveBoard().clearData();
-                            }
-                            break;
-                        default:
-                            System.out.println("Search algorithm not recognized. Check spelling.");
-                            System.exit(0);
-                            break;
-                    }
-                    break;
-                case "setState":
-                    String state = inputs[1] + " " + inputs[2] + " " + inputs[3];
-                    if(state.length() != 11) {
-                        System.out.println("Board state is invalid. Check state again.");
-                        System.exit(0);
-                    }
-                    p.setBoardState(state);
-                    break;
-                case "printState":
-                    System.out.println("Current State: ");
-                    p.checkForNullBoard();
-                    p.interactiveBoard.printBoard();
-                    break;
-                case "move":
-                    String direction = inputs[1];
-                    System.out.println("Moving up " + direction);
-                    p.checkForNullBoard();
-                    p.setInteractiveBoard(p.getInteractiveBoard().move(direction));
-                    break;
-                case "maxNodes":
-                    p.checkForNullBoard();
-                    int maxNodes = Integer.parseInt(inputs[1]);
-                    p.setMaxNodes(maxNodes);
-                    break;
-                case "randomizeState":
-                    if(inputs.length < 2) {
-                        System.out.println("Missing argument.");
-                    }
-                    System.out.println("Randomizing State");
-                    int numMoves = Integer.parseInt(inputs[1]);
-                    p.setInteractiveBoard(new Board(Board.GOAL));
-                    p.generateNRandomMoves(numMoves, numMoves);
-                    break;
-                case "exit":
-                    System.exit(1);
-                    break;
-                case "expA":
-                    System.out.println("Running experiment A ....");
-                    ArrayList<Double> result = p.expAstarH1();
-                    ArrayList<Double> result2 = p.expAstarH2();
-                    ArrayList<Double> result3 = p.expBeam();
-                    System.out.println("A* H1: " + result.toString());
-                    System.out.println("A* H2: " + result2.toString());
-                    System.out.println("Beam: " + result3.toString());
-                    break;
-                case "expB":
-                    System.out.println("Running experiment B ....");
-                    p.exp2Runtime();
-                    break;
-                case "expC":
-                    System.out.println("Running experiment C ....");
-                    p.expC();
-                    break;
-                default:
-                    System.out.println("Command not recognized.");
-                    break;
+            int threads = options.length > 2 ? Integer.parseInt(options[2]) : Runtime.getRuntime().availableProcessors();
+            PrintStream sink = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+            try {
+                new CommandPipeline(processor, sink, threads).run(Paths.get(options[1]));
+            }
+            catch (IOException e) {
+                System.out.println("Error attempting to read file. Check path");
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        Scanner s = new Scanner(System.in);
+        while(!processor.isExited()) {
+            System.out.println("Enter a command:");
+            if(!s.hasNextLine()) {
+                return;
             }
+            processor.execute(Command.parse(s.nextLine()), System.out);
             System.out.println();
             System.out.println();
-            start = false;
         }
     }
 }
@@ -0,0 +1,84 @@
+/**
+ * Duplicate filter for beam search over packed states. It remembers only the
+ * layer being built and the beams of the last few layers, so its memory stays
+ * proportional to the beam width however deep the search goes.
+ *
+ * A state the beam dropped, or one last kept more than DEPTH layers ago, may
+ * be reached again. Every move takes the blank to a cell of the other colour
+ * of a checkerboard, so a state can only recur an even number of layers
+ * later; only those beams are consulted.
+ */
+public final class RecentStates {
+    /** Number of earlier beams remembered */
+    public static final int DEPTH = 8;
+
+    private final StateTable layer = new StateTable();
+    private final StateTable[] beams = new StateTable[DEPTH];
+    // index in beams of the last beam kept
+    private int newest;
+
+    public RecentStates() {
+        for(int i = 0; i < DEPTH; i++) {
+            beams[i] = new StateTable();
+        }
+    }
+
+    /**
+     * Forget everything and make the start state the only beam so far
+     * @param start packed start state
+     */
+    public void reset(long start) {
+        for(StateTable beam : beams) {
+            beam.clear();
+        }
+        layer.clear();
+        newest = 0;
+        beams[0].put(start, 0, StateTable.NO_PARENT);
+    }
+
+    /**
+     * Start building the layer after the last beam kept
+     */
+    public void startLayer() {
+        layer.clear();
+    }
+
+    /**
+     * Record a successor in the layer being built
+     * @return false if the layer already holds it or a recent beam kept it
+     */
+    public boolean offer(long state) {
+        // the beams an even number of layers before the one being built
+        for(int back = 1; back < DEPTH; back += 2) {
+            if(beams[(newest - back + DEPTH) % DEPTH].contains(state)) {
+                return false;
+            }
+        }
+        return layer.offer(state, 0, StateTable.NO_PARENT);
+    }
+
+    /**
+     * Remember the beam chosen from the layer just built, forgetting the oldest
+     * @param beam kept states
+     * @param count number of kept states
+     */
+    public void keep(long[] beam, int count) {
+        newest = (newest + 1) % DEPTH;
+        StateTable kept = beams[newest];
+        kept.clear();
+        for(int i = 0; i < count; i++) {
+            kept.put(beam[i], 0, StateTable.NO_PARENT);
+        }
+    }
+
+    /**
+     * @return the number of states remembered
+     */
+    public int size() {
+        int size = layer.size();
+        for(StateTable beam : beams) {
+            size += beam.size();
+        }
+        return size;
+    }
+}
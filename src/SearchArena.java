@@ -0,0 +1,82 @@
+/**
+ * The node storage, open list, closed table, state interner and beam search
+ * filter a search works in, kept per thread and reused by every search that
+ * thread runs.
+ *
+ * After the first few searches a thread's arena has grown to the size its
+ * searches need, so later searches allocate no new storage for them. Taking
+ * a structure out of the arena resets it: the nodes and the closed table clear
+ * in constant time, the open list in time proportional to the f values it used.
+ *
+ * An arena belongs to one thread. Whatever a search takes from it is only
+ * valid until the next search on the same thread takes it again.
+ */
+public final class SearchArena {
+    private static final ThreadLocal<SearchArena> CURRENT = ThreadLocal.withInitial(SearchArena::new);
+
+    private final NodeArena nodes = new NodeArena();
+    private NodeQueue queue = new NodeQueue(BucketQueue.TieBreak.LOW_H);
+    private final StateTable closed = new StateTable();
+    private StateInterner interner;
+    private RecentStates recent;
+
+    private SearchArena() {
+    }
+
+    /**
+     * @return the calling thread's arena
+     */
+    public static SearchArena current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return the empty node storage
+     */
+    public NodeArena nodes() {
+        nodes.clear();
+        return nodes;
+    }
+
+    /**
+     * @param tieBreak policy the search orders its open list by
+     * @return the empty open list of node indices
+     */
+    public NodeQueue queue(BucketQueue.TieBreak tieBreak) {
+        if(queue.getTieBreak() != tieBreak) {
+            queue = new NodeQueue(tieBreak);
+        }
+        queue.clear();
+        return queue;
+    }
+
+    /**
+     * @return the empty closed table
+     */
+    public StateTable closed() {
+        closed.clear();
+        return closed;
+    }
+
+    /**
+     * @return the beam search duplicate filter; the search resets it
+     */
+    public RecentStates recent() {
+        if(recent == null) {
+            recent = new RecentStates();
+        }
+        return recent;
+    }
+
+    /**
+     * @param cells cells of the boards the search interns
+     * @return the empty interner
+     */
+    public StateInterner interner(int cells) {
+        if(interner == null || interner.getCells() != cells) {
+            interner = new StateInterner(cells);
+        }
+        interner.clear();
+        return interner;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * A wall-clock deadline and a cancellation flag that a running search polls.
+ *
+ * Searches ask {@link #shouldStop} on every expansion, which only looks at
+ * the clock and the flag once every {@link #CHECK_INTERVAL} expansions, so the
+ * check costs next to nothing. A search that is told to stop gives up as it
+ * does at the node limit. Any thread may cancel.
+ */
+public final class SearchLimit {
+    /** Expansions between looks at the clock and the flag; a power of two */
+    public static final int CHECK_INTERVAL = 4096;
+    /** A limit that never stops a search */
+    public static final SearchLimit NONE = new SearchLimit(0, false);
+
+    private final long deadline;
+    private final boolean hasDeadline;
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+
+    private SearchLimit(long deadline, boolean hasDeadline) {
+        this.deadline = deadline;
+        this.hasDeadline = hasDeadline;
+    }
+
+    /**
+     * @param millis wall-clock time allowed from now, or 0 for no deadline
+     * @return a limit that can also be cancelled
+     */
+    public static SearchLimit of(long millis) {
+        return millis > 0 ? new SearchLimit(System.nanoTime() + millis * 1000000L, true) : new SearchLimit(0, false);
+    }
+
+    /**
+     * Ask the search to stop at its next check
+     */
+    public void cancel() {
+        if(this != NONE) {
+            cancelled = true;
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if a search stopped because the deadline passed
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @param expansions expansions so far; the limit is only checked when this is a multiple of the interval
+     * @return true if the search should give up
+     */
+    public boolean shouldStop(long expansions) {
+        return (expansions & (CHECK_INTERVAL - 1)) == 0 && reached();
+    }
+
+    /**
+     * @return true if the search was cancelled or the deadline has passed
+     */
+    public boolean reached() {
+        if(cancelled) {
+            return true;
+        }
+        if(hasDeadline && System.nanoTime() - deadline >= 0) {
+            timedOut = true;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,286 @@
+import java.util.Arrays;
+
+/**
+ * Counters and timings for one solve.
+ *
+ * A* and beam search fill in every counter. The other algorithms run inside
+ * their own solver classes and only report nodes expanded, so for them the
+ * remaining counters stay at zero and are not printed.
+ *
+ * Phase timings are sampled so that they cost almost nothing: the phases of
+ * one expansion in every SAMPLE_INTERVAL are timed with System.nanoTime and the
+ * totals are scaled up by the number of expansions. Expansion time covers
+ * building the successors, including their incremental heuristic updates;
+ * heuristic time covers the full evaluations the search makes itself, such as
+ * the root's; queue time covers the open list pushes and polls together with
+ * the closed table updates that decide which children are pushed.
+ */
+public final class SearchStats {
+    public static final int SAMPLE_INTERVAL = 16;
+
+    public enum Phase {
+        EXPANSION, HEURISTIC, QUEUE
+    }
+
+    private String algorithm = "";
+    private String argument;
+    private boolean detailed;
+    private boolean cached;
+    private long startNanos;
+    private long totalNanos;
+    private int solutionLength = -1;
+
+    private long expanded;
+    private long generated;
+    private long duplicates;
+    private long reopenings;
+    private int peakOpen;
+    private int peakClosed;
+    private long peakMemory;
+    private long memoryBudget;
+
+    private final long[] sampledNanos = new long[Phase.values().length];
+    private final long[] onceNanos = new long[Phase.values().length];
+    private long sampledExpansions;
+    private boolean sampling;
+
+    /**
+     * Clear every counter and start the clock for a new solve
+     * @param algorithm algorithm name as given to the solve command
+     * @param argument heuristic or beam width, or null
+     */
+    public void begin(String algorithm, String argument) {
+        this.algorithm = algorithm;
+        this.argument = argument;
+        this.detailed = false;
+        this.cached = false;
+        this.solutionLength = -1;
+        expanded = 0;
+        generated = 0;
+        duplicates = 0;
+        reopenings = 0;
+        peakOpen = 0;
+        peakClosed = 0;
+        peakMemory = 0;
+        memoryBudget = 0;
+        Arrays.fill(sampledNanos, 0);
+        Arrays.fill(onceNanos, 0);
+        sampledExpansions = 0;
+        sampling = false;
+        totalNanos = 0;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Stop the clock
+     * @param solutionLength moves in the solution, or -1 if none was found
+     */
+    public void end(int solutionLength) {
+        totalNanos = System.nanoTime() - startNanos;
+        this.solutionLength = solutionLength;
+    }
+
+    /**
+     * Mark the counters as filled in by the search itself rather than only the expansion total
+     */
+    public void setDetailed(boolean detailed) {
+        this.detailed = detailed;
+    }
+
+    /**
+     * Mark the solve as answered from a {@link SolutionCache} without searching
+     */
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * Count an expansion and decide whether its phases are timed
+     */
+    public void expanded() {
+        expanded++;
+        sampling = (expanded & (SAMPLE_INTERVAL - 1)) == 0;
+        if(sampling) {
+            sampledExpansions++;
+        }
+    }
+
+    public void setExpanded(long expanded) {
+        this.expanded = expanded;
+    }
+
+    public void generated(int count) {
+        generated += count;
+    }
+
+    public void duplicate() {
+        duplicates++;
+    }
+
+    /**
+     * Count a state that was reached again more cheaply after it had been queued,
+     * and so is queued (and possibly expanded) again
+     */
+    public void reopened() {
+        reopenings++;
+    }
+
+    public void observeOpen(int size) {
+        if(size > peakOpen) {
+            peakOpen = size;
+        }
+    }
+
+    public void observeClosed(int size) {
+        if(size > peakClosed) {
+            peakClosed = size;
+        }
+    }
+
+    /**
+     * Record how much of a memory budget the search used
+     * @param peakBytes most bytes held at once
+     * @param budgetBytes bytes allowed
+     */
+    public void setMemory(long peakBytes, long budgetBytes) {
+        this.peakMemory = peakBytes;
+        this.memoryBudget = budgetBytes;
+    }
+
+    /**
+     * @return a start time to pass to {@link #stop}, or 0 if this expansion is not sampled
+     */
+    public long start() {
+        return sampling ? System.nanoTime() : 0;
+    }
+
+    public void stop(Phase phase, long started) {
+        if(started != 0) {
+            sampledNanos[phase.ordinal()] += System.nanoTime() - started;
+        }
+    }
+
+    /**
+     * Time work that happens once per search rather than once per expansion
+     * @param started System.nanoTime() when the work began
+     */
+    public void stopOnce(Phase phase, long started) {
+        onceNanos[phase.ordinal()] += System.nanoTime() - started;
+    }
+
+    /**
+     * @return estimated nanoseconds spent in a phase
+     */
+    public long getNanos(Phase phase) {
+        long perExpansion = sampledExpansions == 0 ? 0 : sampledNanos[phase.ordinal()] * expanded / sampledExpansions;
+        return perExpansion + onceNanos[phase.ordinal()];
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    public boolean isDetailed() {
+        return detailed;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public int getSolutionLength() {
+        return solutionLength;
+    }
+
+    public long getExpanded() {
+        return expanded;
+    }
+
+    public long getGenerated() {
+        return generated;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getReopenings() {
+        return reopenings;
+    }
+
+    public int getPeakOpen() {
+        return peakOpen;
+    }
+
+    public int getPeakClosed() {
+        return peakClosed;
+    }
+
+    public long getPeakMemory() {
+        return peakMemory;
+    }
+
+    /**
+     * @return the memory budget of the search, or 0 if it had none
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @return peak memory against the budget, e.g. "Peak memory: 5400 of 67108864 bytes (0.0%)"
+     */
+    public String memorySummary() {
+        return String.format("Peak memory: %d of %d bytes (%.1f%%)", peakMemory, memoryBudget,
+                memoryBudget == 0 ? 0.0 : 100.0 * peakMemory / memoryBudget);
+    }
+
+    public double getNodesPerSecond() {
+        return totalNanos == 0 ? 0 : expanded * 1e9 / totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        if(algorithm.isEmpty()) {
+            return "No search has run yet.";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Algorithm: ").append(algorithm);
+        if(argument != null) {
+            sb.append(' ').append(argument);
+        }
+        sb.append('\n');
+        sb.append("Solution length: ").append(solutionLength < 0 ? "not solved" : String.valueOf(solutionLength)).append('\n');
+        sb.append(String.format("Time: %.3f ms\n", totalNanos / 1e6));
+        sb.append("Nodes expanded: ").append(expanded).append('\n');
+        sb.append(String.format("Nodes per second: %.0f\n", getNodesPerSecond()));
+        if(memoryBudget > 0) {
+            sb.append(memorySummary()).append('\n');
+        }
+        if(cached) {
+            sb.append("(answered from the solution cache)");
+        }
+        else if(detailed) {
+            sb.append("Nodes generated: ").append(generated).append('\n');
+            sb.append("Duplicates pruned: ").append(duplicates).append('\n');
+            sb.append("Reopenings: ").append(reopenings).append('\n');
+            sb.append("Peak open: ").append(peakOpen).append('\n');
+            sb.append("Peak closed: ").append(peakClosed).append('\n');
+            sb.append(String.format("Expansion: %.3f ms, heuristic: %.3f ms, queue: %.3f ms (sampled 1 in %d)",
+                    getNanos(Phase.EXPANSION) / 1e6, getNanos(Phase.HEURISTIC) / 1e6,
+                    getNanos(Phase.QUEUE) / 1e6, SAMPLE_INTERVAL));
+        }
+        else {
+            sb.append("(only nodes expanded are tracked for this algorithm)");
+        }
+        return sb.toString();
+    }
+}
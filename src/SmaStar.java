@@ -0,0 +1,436 @@
+import java.util.Arrays;
+
+/**
+ * Simplified memory-bounded A* (SMA*) for a single packed board (up to 4x4).
+ *
+ * The search tree is stored in parallel arrays sized from a byte budget, so
+ * its footprint never exceeds the budget whatever the puzzle. When the arrays
+ * are full and another successor has to be stored, the worst leaf, meaning
+ * the highest f with ties going to the shallowest, is forgotten. Its f is
+ * backed up into its parent as the least f of the parent's forgotten
+ * successors, and the parent goes back on the open list under that value so
+ * that the forgotten branch is regenerated once it is the most promising
+ * again. A node whose own path would not fit in memory gets an infinite f.
+ *
+ * With an admissible heuristic the solution is optimal whenever the optimal
+ * path fits in the budget. The move that would reverse the previous one is
+ * never generated; other transpositions are not detected, as in IDA*.
+ */
+public final class SmaStar {
+    /**
+     * Bytes per stored node: the packed state, nine ints of tree and heap
+     * bookkeeping, the two heap arrays, and a byte each for h and the move
+     */
+    public static final int BYTES_PER_NODE = 8 + 9 * 4 + 2 * 4 + 2;
+    public static final long DEFAULT_BUDGET = 64L << 20;
+    private static final int MIN_NODES = 16;
+    private static final int INITIAL_NODES = 1024;
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int NONE = -1;
+    private static final int NO_MOVE = -1;
+
+    private final BoardSize size;
+    private final Heuristic heuristic;
+    private final int maxNodes;
+    private final long budget;
+    private final int capacity;
+    private SearchLimit limit = SearchLimit.NONE;
+
+    private long[] state;
+    private int[] g;
+    private int[] f;
+    // open list priority: f for a leaf, the least forgotten f for a node with forgotten successors
+    private int[] key;
+    private int[] forgotten;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private byte[] h;
+    private byte[] move;
+
+    private int expanding = NONE;
+    private int allocated;
+    private int freeList = NONE;
+    private int used;
+    private int peakNodes;
+    private int nodesVisited;
+    private boolean exceededMax;
+
+    // nodes with successors left to generate, lowest key and then deepest first
+    private final NodeHeap open = new NodeHeap() {
+        @Override
+        boolean before(int a, int b) {
+            return key[a] != key[b] ? key[a] < key[b] : g[a] > g[b];
+        }
+    };
+    // nodes without successors in memory, highest f and then shallowest first
+    private final NodeHeap leaves = new NodeHeap() {
+        @Override
+        boolean before(int a, int b) {
+            return f[a] != f[b] ? f[a] > f[b] : g[a] < g[b];
+        }
+    };
+
+    /**
+     * @param size board size; must be packed
+     * @param heuristicType a label accepted by {@link Heuristic#fromLabel}
+     * @param maxNodes expansion limit
+     * @param budget bytes the search tree may occupy
+     */
+    public SmaStar(BoardSize size, String heuristicType, int maxNodes, long budget) {
+        if(!size.isPacked()) {
+            throw new IllegalArgumentException("SMA* supports boards of up to 16 cells, not " + size);
+        }
+        if(budget < (long) MIN_NODES * BYTES_PER_NODE) {
+            throw new IllegalArgumentException("Memory limit must be at least " + MIN_NODES * BYTES_PER_NODE + " bytes.");
+        }
+        this.size = size;
+        this.heuristic = Heuristic.forSearch(size, heuristicType);
+        this.maxNodes = maxNodes;
+        this.budget = budget;
+        this.capacity = (int) Math.min(budget / BYTES_PER_NODE, Integer.MAX_VALUE - 8);
+        allocate(Math.min(INITIAL_NODES, capacity));
+    }
+
+    /**
+     * Search for an optimal path from the start state to the goal
+     * @param start packed start state
+     * @return the directions to move the blank, or null if the goal is unreachable,
+     * no path to it fits in the budget, or the node limit was hit
+     */
+    public int[] solve(long start) {
+        if(!size.isSolvable(start)) {
+            return null;
+        }
+
+        int hStart = heuristic.evaluate(size, start);
+        int root = newNode(start, 0, hStart, NONE, NO_MOVE);
+        f[root] = hStart;
+        key[root] = hStart;
+        open.add(root);
+        leaves.add(root);
+
+        while(!open.isEmpty()) {
+            int best = open.peek();
+            if(key[best] == INFINITY) {
+                return null;
+            }
+            if(state[best] == size.getGoalState()) {
+                return path(best);
+            }
+            if(nodesVisited >= maxNodes || limit.shouldStop(nodesVisited)) {
+                exceededMax = true;
+                return null;
+            }
+            nodesVisited++;
+            expand(best);
+        }
+        return null;
+    }
+
+    /**
+     * @param limit deadline and cancellation, checked alongside the node limit
+     */
+    public void setLimit(SearchLimit limit) {
+        this.limit = limit;
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
+
+    public boolean getExceedMax() {
+        return exceededMax;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the most nodes held at once
+     */
+    public int getPeakNodes() {
+        return peakNodes;
+    }
+
+    /**
+     * @return bytes the most nodes held at once occupied
+     */
+    public long getPeakBytes() {
+        return (long) peakNodes * BYTES_PER_NODE;
+    }
+
+    /**
+     * Generate the successors of a node that are not in memory
+     */
+    private void expand(int n) {
+        expanding = n;
+        open.remove(n);
+        leaves.remove(n);
+        // every successor still to generate has at least this f
+        int base = key[n];
+        forgotten[n] = INFINITY;
+
+        long s = state[n];
+        int blank = size.blank(s);
+        for(int direction : size.legalMoves(blank)) {
+            if(move[n] != NO_MOVE && direction == BoardSize.opposite(move[n])) {
+                continue;
+            }
+            long child = size.move(s, direction);
+            if(hasChild(n, child)) {
+                continue;
+            }
+            int target = size.target(blank, direction);
+            int hChild = heuristic.update(size, h[n], child, BoardSize.tileAt(s, target), target, blank);
+            int gChild = g[n] + 1;
+            int fChild = child != size.getGoalState() && gChild >= capacity - 1 ? INFINITY
+                    : Math.max(base, gChild + hChild);
+
+            if(used == capacity && !forgetWorseLeaf(fChild, gChild)) {
+                // the new successor is the worst of all, so it is the one forgotten
+                forgotten[n] = Math.min(forgotten[n], fChild);
+                continue;
+            }
+            int c = newNode(child, gChild, hChild, n, direction);
+            f[c] = fChild;
+            key[c] = fChild;
+            nextSibling[c] = firstChild[n];
+            firstChild[n] = c;
+            open.add(c);
+            leaves.add(c);
+        }
+
+        expanding = NONE;
+        if(firstChild[n] == NONE) {
+            f[n] = forgotten[n];
+            key[n] = f[n];
+            open.add(n);
+            leaves.add(n);
+        }
+        else if(forgotten[n] != INFINITY) {
+            key[n] = forgotten[n];
+            open.add(n);
+        }
+    }
+
+    /**
+     * Forget the worst leaf if it is worse than a successor about to be stored
+     * @return true if a node was freed
+     */
+    private boolean forgetWorseLeaf(int fNew, int gNew) {
+        if(leaves.isEmpty()) {
+            return false;
+        }
+        int w = leaves.peek();
+        if(f[w] < fNew || (f[w] == fNew && g[w] >= gNew)) {
+            return false;
+        }
+        leaves.remove(w);
+        open.remove(w);
+
+        int p = parent[w];
+        unlink(p, w);
+        release(w);
+        forgotten[p] = Math.min(forgotten[p], f[w]);
+        if(p == expanding) {
+            // requeued when its expansion ends
+            return true;
+        }
+        if(firstChild[p] == NONE) {
+            f[p] = forgotten[p];
+            leaves.add(p);
+        }
+        key[p] = forgotten[p];
+        open.update(p);
+        return true;
+    }
+
+    private boolean hasChild(int n, long child) {
+        for(int c = firstChild[n]; c != NONE; c = nextSibling[c]) {
+            if(state[c] == child) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void unlink(int p, int c) {
+        if(firstChild[p] == c) {
+            firstChild[p] = nextSibling[c];
+            return;
+        }
+        int prev = firstChild[p];
+        while(nextSibling[prev] != c) {
+            prev = nextSibling[prev];
+        }
+        nextSibling[prev] = nextSibling[c];
+    }
+
+    private int[] path(int goal) {
+        int[] moves = new int[g[goal]];
+        for(int n = goal; parent[n] != NONE; n = parent[n]) {
+            moves[g[n] - 1] = move[n];
+        }
+        return moves;
+    }
+
+    private int newNode(long s, int depth, int hValue, int parentNode, int direction) {
+        int n;
+        if(freeList != NONE) {
+            n = freeList;
+            freeList = nextSibling[n];
+        }
+        else {
+            if(allocated == state.length) {
+                allocate((int) Math.min((long) state.length << 1, capacity));
+            }
+            n = allocated++;
+        }
+        state[n] = s;
+        g[n] = depth;
+        h[n] = (byte) hValue;
+        parent[n] = parentNode;
+        move[n] = (byte) direction;
+        firstChild[n] = NONE;
+        nextSibling[n] = NONE;
+        forgotten[n] = INFINITY;
+        used++;
+        if(used > peakNodes) {
+            peakNodes = used;
+        }
+        return n;
+    }
+
+    private void release(int n) {
+        nextSibling[n] = freeList;
+        freeList = n;
+        used--;
+    }
+
+    private void allocate(int nodes) {
+        state = state == null ? new long[nodes] : Arrays.copyOf(state, nodes);
+        g = grow(g, nodes);
+        f = grow(f, nodes);
+        key = grow(key, nodes);
+        forgotten = grow(forgotten, nodes);
+        parent = grow(parent, nodes);
+        firstChild = grow(firstChild, nodes);
+        nextSibling = grow(nextSibling, nodes);
+        h = h == null ? new byte[nodes] : Arrays.copyOf(h, nodes);
+        move = move == null ? new byte[nodes] : Arrays.copyOf(move, nodes);
+        open.grow(nodes);
+        leaves.grow(nodes);
+    }
+
+    private static int[] grow(int[] a, int nodes) {
+        return a == null ? new int[nodes] : Arrays.copyOf(a, nodes);
+    }
+
+    /**
+     * Binary heap of node ids that also records each node's position, so that
+     * any node can be removed or repositioned in logarithmic time
+     */
+    private abstract static class NodeHeap {
+        private int[] heap = new int[0];
+        private int[] position = new int[0];
+        private int count;
+
+        /**
+         * @return true if node a comes out of the heap before node b
+         */
+        abstract boolean before(int a, int b);
+
+        void grow(int nodes) {
+            int old = position.length;
+            heap = Arrays.copyOf(heap, nodes);
+            position = Arrays.copyOf(position, nodes);
+            Arrays.fill(position, old, nodes, NONE);
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        boolean contains(int n) {
+            return position[n] != NONE;
+        }
+
+        int peek() {
+            return heap[0];
+        }
+
+        void add(int n) {
+            heap[count] = n;
+            position[n] = count;
+            count++;
+            up(position[n]);
+        }
+
+        /**
+         * Add a node, or move it after its priority changed
+         */
+        void update(int n) {
+            if(!contains(n)) {
+                add(n);
+                return;
+            }
+            up(position[n]);
+            down(position[n]);
+        }
+
+        void remove(int n) {
+            int i = position[n];
+            if(i == NONE) {
+                return;
+            }
+            position[n] = NONE;
+            count--;
+            if(i == count) {
+                return;
+            }
+            int last = heap[count];
+            heap[i] = last;
+            position[last] = i;
+            up(i);
+            down(position[last]);
+        }
+
+        private void up(int i) {
+            int n = heap[i];
+            while(i > 0) {
+                int p = (i - 1) >> 1;
+                if(!before(n, heap[p])) {
+                    break;
+                }
+                heap[i] = heap[p];
+                position[heap[i]] = i;
+                i = p;
+            }
+            heap[i] = n;
+            position[n] = i;
+        }
+
+        private void down(int i) {
+            int n = heap[i];
+            while(true) {
+                int c = (i << 1) + 1;
+                if(c >= count) {
+                    break;
+                }
+                if(c + 1 < count && before(heap[c + 1], heap[c])) {
+                    c++;
+                }
+                if(!before(heap[c], n)) {
+                    break;
+                }
+                heap[i] = heap[c];
+                position[heap[i]] = i;
+                i = c;
+            }
+            heap[i] = n;
+            position[n] = i;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of solved boards, shared by every solve that is given it.
+ *
+ * Entries are keyed by the packed start state together with the algorithm and
+ * its argument, and hold the moves from that state to the goal. The least
+ * recently used entry is evicted once the cache is full. Boards too large to
+ * pack are never cached.
+ *
+ * The algorithms that always return optimal solutions also cache every state
+ * along the path: any suffix of an optimal path is an optimal path from where
+ * it starts, so a later solve that lands anywhere on it is answered at once.
+ * The suffixes share the path's move array. Every other algorithm, such as
+ * beam search or SMA*, which is only optimal when the path fits in its memory
+ * budget, only caches the state it was started from.
+ *
+ * A cached answer is returned whatever the current node limit, since it costs
+ * no search. All methods are thread-safe.
+ *
+ * Work that runs ahead of earlier work, such as a block of a command file
+ * solved in parallel, can use an {@link #overlay}: a private cache that reads
+ * through to this one and logs its lookups and insertions. When the earlier
+ * work is done, {@link #canMerge} tells whether each of those lookups would
+ * have found the same answer here, and {@link #merge} then replays the log,
+ * leaving this cache, its counts and its eviction order as if the work had
+ * run on it directly.
+ */
+public final class SolutionCache {
+    public static final int DEFAULT_CAPACITY = 100000;
+    // algorithms whose solutions are optimal whatever the board and settings
+    private static final Set<String> OPTIMAL = new HashSet<>(Arrays.asList(
+            "A-star", "A-star-par", "bidirectional", "IDA-star", "optimal"));
+
+    private final int capacity;
+    // kept in least recently used order by hand, so that canMerge can look without touching
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    // for an overlay: the cache it reads through to, and its lookups and insertions in order
+    private final SolutionCache shared;
+    private final List<Operation> log;
+
+    /**
+     * @param capacity maximum number of cached states
+     */
+    public SolutionCache(int capacity) {
+        this(capacity, null);
+    }
+
+    private SolutionCache(int capacity, SolutionCache shared) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive.");
+        }
+        this.capacity = capacity;
+        this.shared = shared;
+        this.log = shared == null ? null : new ArrayList<>();
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if(size() > SolutionCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return true if the algorithm's solutions are always optimal, so that
+     * their suffixes may be cached; false for any algorithm not known to be
+     */
+    public static boolean isOptimal(String algorithm) {
+        return OPTIMAL.contains(algorithm);
+    }
+
+    /**
+     * @param size board size; must be packed
+     * @param state packed start state
+     * @param algorithm algorithm name as given to the solve command
+     * @param argument what else decides the answer, such as the heuristic
+     * @return moves from the state to the goal, or null if they are not cached
+     */
+    public synchronized int[] get(BoardSize size, long state, String algorithm, String argument) {
+        Key key = new Key(size, state, algorithm, argument);
+        Entry entry;
+        if(shared != null) {
+            entry = entries.get(key);
+            if(entry == null) {
+                entry = shared.peek(key);
+            }
+            log.add(new Operation(key, entry));
+        }
+        else {
+            entry = lookup(key);
+        }
+        if(entry == null) {
+            return null;
+        }
+        int[] moves = new int[entry.moves.length - entry.from];
+        for(int i = 0; i < moves.length; i++) {
+            moves[i] = entry.moves[entry.from + i];
+        }
+        return moves;
+    }
+
+    /**
+     * Look a key up, counting the hit or miss and marking it most recently used
+     */
+    private Entry lookup(Key key) {
+        Entry entry = entries.remove(key);
+        if(entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entries.put(key, entry);
+        return entry;
+    }
+
+    private synchronized Entry peek(Key key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Cache a solution, along with all its suffixes if the algorithm is optimal
+     * @param states the packed states along the path, start first; states[i] is the state before moves[i]
+     * @param moves directions of the solution
+     */
+    public synchronized void put(BoardSize size, long[] states, int[] moves, String algorithm, String argument) {
+        byte[] path = new byte[moves.length];
+        for(int i = 0; i < moves.length; i++) {
+            path[i] = (byte) moves[i];
+        }
+        int last = isOptimal(algorithm) ? moves.length : 1;
+        List<Key> keys = shared == null ? null : new ArrayList<>();
+        for(int i = 0; i < last; i++) {
+            Key key = new Key(size, states[i], algorithm, argument);
+            entries.remove(key);
+            entries.put(key, new Entry(path, i));
+            if(keys != null) {
+                keys.add(key);
+            }
+        }
+        if(log != null) {
+            log.add(new Operation(size, states, moves, algorithm, argument, keys));
+        }
+    }
+
+    /**
+     * @return an empty private cache reading through to this one; it holds
+     * whatever is put into it until it is merged
+     */
+    public SolutionCache overlay() {
+        return new SolutionCache(Integer.MAX_VALUE, this);
+    }
+
+    /**
+     * @param overlay an overlay of this cache
+     * @return true if every lookup the overlay made would give the same answer
+     * on this cache as it stands, so that merging it is the same as having run
+     * its work here. False too if the merged entries could evict something.
+     */
+    public synchronized boolean canMerge(SolutionCache overlay) {
+        if(overlay.shared != this) {
+            throw new IllegalArgumentException("Not an overlay of this cache.");
+        }
+        if(entries.size() + overlay.entries.size() > capacity) {
+            return false;
+        }
+        Set<Key> own = new HashSet<>();
+        for(Operation op : overlay.log) {
+            if(op.keys != null) {
+                own.addAll(op.keys);
+            }
+            else if(!own.contains(op.key) && entries.get(op.key) != op.found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replay an overlay's lookups and insertions on this cache, in order
+     * @param overlay an overlay for which {@link #canMerge} holds
+     */
+    public synchronized void merge(SolutionCache overlay) {
+        for(Operation op : overlay.log) {
+            if(op.keys != null) {
+                put(op.size, op.states, op.moves, op.algorithm, op.argument);
+            }
+            else {
+                lookup(op.key);
+            }
+        }
+        overlay.log.clear();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Solution cache: %d of %d states, hits=%d misses=%d evictions=%d",
+                entries.size(), capacity, hits, misses, evictions);
+    }
+
+    /**
+     * One logged lookup (key and the entry found, if any) or insertion (keys null for a lookup)
+     */
+    private static final class Operation {
+        private final Key key;
+        private final Entry found;
+        private final BoardSize size;
+        private final long[] states;
+        private final int[] moves;
+        private final String algorithm;
+        private final String argument;
+        private final List<Key> keys;
+
+        Operation(Key key, Entry found) {
+            this(key, found, null, null, null, null, null, null);
+        }
+
+        Operation(BoardSize size, long[] states, int[] moves, String algorithm, String argument, List<Key> keys) {
+            this(null, null, size, states, moves, algorithm, argument, keys);
+        }
+
+        private Operation(Key key, Entry found, BoardSize size, long[] states, int[] moves, String algorithm,
+                          String argument, List<Key> keys) {
+            this.key = key;
+            this.found = found;
+            this.size = size;
+            this.states = states;
+            this.moves = moves;
+            this.algorithm = algorithm;
+            this.argument = argument;
+            this.keys = keys;
+        }
+    }
+
+    private static final class Key {
+        private final BoardSize size;
+        private final long state;
+        private final String algorithm;
+        private final String argument;
+
+        Key(BoardSize size, long state, String algorithm, String argument) {
+            this.size = size;
+            this.state = state;
+            this.algorithm = algorithm;
+            this.argument = argument == null ? "" : argument;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return state == k.state && size == k.size && algorithm.equals(k.algorithm) && argument.equals(k.argument);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Long.hashCode(state * 0x9E3779B97F4A7C15L);
+            return 31 * (31 * h + algorithm.hashCode()) + argument.hashCode();
+        }
+    }
+
+    /**
+     * The moves of one cached path, starting at index from
+     */
+    private static final class Entry {
+        private final byte[] moves;
+        private final int from;
+
+        Entry(byte[] moves, int from) {
+            this.moves = moves;
+            this.from = from;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event committed at the end of every solve, carrying the
+ * {@link SearchStats} of the search. Record with
+ * java -XX:StartFlightRecording=filename=solves.jfr ... and inspect with
+ * jfr print --events puzzle.Solve solves.jfr. When no recording is running
+ * the event is disabled and costs next to nothing.
+ */
+@Name("puzzle.Solve")
+@Label("Puzzle Solve")
+@Category("Puzzle")
+@Description("One solve command: the algorithm, the start board and the search counters")
+final class SolveEvent extends Event {
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Argument")
+    String argument;
+
+    @Label("Start State")
+    String startState;
+
+    @Label("From Cache")
+    boolean cached;
+
+    @Label("Solution Length")
+    int solutionLength;
+
+    @Label("Nodes Expanded")
+    long expanded;
+
+    @Label("Nodes Generated")
+    long generated;
+
+    @Label("Duplicates Pruned")
+    long duplicates;
+
+    @Label("Reopenings")
+    long reopenings;
+
+    @Label("Peak Open")
+    int peakOpen;
+
+    @Label("Peak Closed")
+    int peakClosed;
+
+    @Label("Peak Memory")
+    @DataAmount
+    long peakMemory;
+
+    @Label("Memory Budget")
+    @DataAmount
+    long memoryBudget;
+
+    @Label("Expansion Nanos")
+    long expansionNanos;
+
+    @Label("Heuristic Nanos")
+    long heuristicNanos;
+
+    @Label("Queue Nanos")
+    long queueNanos;
+
+    /**
+     * Copy the statistics of a finished search into the event
+     */
+    void fill(SearchStats stats, String startState) {
+        this.algorithm = stats.getAlgorithm();
+        this.argument = stats.getArgument();
+        this.startState = startState;
+        this.cached = stats.isCached();
+        this.solutionLength = stats.getSolutionLength();
+        this.expanded = stats.getExpanded();
+        this.generated = stats.getGenerated();
+        this.duplicates = stats.getDuplicates();
+        this.reopenings = stats.getReopenings();
+        this.peakOpen = stats.getPeakOpen();
+        this.peakClosed = stats.getPeakClosed();
+        this.peakMemory = stats.getPeakMemory();
+        this.memoryBudget = stats.getMemoryBudget();
+        this.expansionNanos = stats.getNanos(SearchStats.Phase.EXPANSION);
+        this.heuristicNanos = stats.getNanos(SearchStats.Phase.HEURISTIC);
+        this.queueNanos = stats.getNanos(SearchStats.Phase.QUEUE);
+    }
+}
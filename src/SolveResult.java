@@ -0,0 +1,56 @@
+/**
+ * How an asynchronous solve ended: the solution if there was one, and the
+ * statistics of the search up to the point it stopped.
+ */
+public final class SolveResult {
+    public enum Status {
+        /** The goal was reached */
+        SOLVED,
+        /** The search ended without a solution: the board is unsolvable, the beam ran dry or the node limit was hit */
+        NOT_FOUND,
+        /** The deadline passed first */
+        TIMED_OUT,
+        /** The solve was cancelled first */
+        CANCELLED
+    }
+
+    private final Status status;
+    private final Board solution;
+    private final SearchStats stats;
+
+    SolveResult(Status status, Board solution, SearchStats stats) {
+        this.status = status;
+        this.solution = solution;
+        this.stats = stats;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the goal was reached
+     */
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    /**
+     * @return the solved board, whose parent chain is the path, or null if the goal was not reached
+     */
+    public Board getSolution() {
+        return solution;
+    }
+
+    /**
+     * @return statistics of the search, as far as it got
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return status + "\n" + stats;
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Thin client for {@link SolverServer}. Sends commands in commands.txt syntax
+ * and prints the server's answers the way the interactive mode prints its own
+ * output, so a session looks the same whether it runs locally or on the server.
+ */
+public final class SolverClient implements AutoCloseable {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    /**
+     * Connect to a server on the loopback address
+     * @param port the server's port
+     */
+    public SolverClient(int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Run one command and wait for its answer
+     * @param command a command line; must not be blank
+     * @return the command's output, or null if the server closed the connection
+     */
+    public String send(String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        return readResponse();
+    }
+
+    /**
+     * Send every command before reading any answer, so that the server
+     * receives them together and runs them as one batch
+     * @param commands command lines; blank lines are skipped
+     * @return one output per non-blank command, in order; shorter if the server closed the connection
+     */
+    public List<String> sendAll(List<String> commands) throws IOException {
+        int sent = 0;
+        for(String command : commands) {
+            if(!command.trim().isEmpty()) {
+                out.write(command);
+                out.write('\n');
+                sent++;
+            }
+        }
+        out.flush();
+        List<String> responses = new ArrayList<>(sent);
+        for(int i = 0; i < sent; i++) {
+            String response = readResponse();
+            if(response == null) {
+                break;
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private String readResponse() throws IOException {
+        StringBuilder response = new StringBuilder();
+        String line;
+        while((line = in.readLine()) != null) {
+            if(line.equals(SolverServer.END)) {
+                return response.toString();
+            }
+            response.append(line).append('\n');
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Print an answer followed by the blank lines the interactive mode leaves between commands
+     */
+    private static void print(String response) {
+        System.out.print(response);
+        System.out.println();
+        System.out.println();
+    }
+
+    /**
+     * @param args optional port, then optionally a file of commands to send instead of reading standard input
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : SolverServer.DEFAULT_PORT;
+        try(SolverClient client = new SolverClient(port)) {
+            if(args.length > 1) {
+                List<String> commands = Files.readAllLines(Paths.get(args[1]));
+                for(String response : client.sendAll(commands)) {
+                    print(response);
+                }
+                return;
+            }
+            Scanner s = new Scanner(System.in);
+            while(true) {
+                System.out.println("Enter a command:");
+                if(!s.hasNextLine()) {
+                    return;
+                }
+                String command = s.nextLine();
+                if(command.trim().isEmpty()) {
+                    continue;
+                }
+                String response = client.send(command);
+                if(response == null) {
+                    return;
+                }
+                print(response);
+                if(command.trim().equals("exit")) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a warmed-up solver resident and serves commands over a loopback socket.
+ *
+ * The protocol is line based and uses the syntax of commands.txt: the client
+ * sends one command per line and the server answers each one with the text the
+ * interactive mode would print for it, followed by a line holding only
+ * {@link #END}. Every connection has its own board and settings, as if it
+ * were its own interactive session, while all of them share one
+ * {@link SolutionCache}.
+ *
+ * One selector thread does all the socket I/O without blocking. After each
+ * select, the complete lines that arrived on a connection are handed to the
+ * worker pool as one batch, so a client that pipelines a whole file pays a
+ * single hand-off for it. Batches from different connections run in parallel;
+ * a connection's next batch is only dispatched once its previous one is done,
+ * which keeps its commands in order. Finished batches are queued back to the
+ * selector thread, which writes them out.
+ */
+public final class SolverServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7878;
+    /** Line that ends every response */
+    public static final String END = ".";
+
+    private static final int READ_BUFFER = 8192;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Queue<Connection> finished = new ConcurrentLinkedQueue<>();
+    private final SolutionCache cache = new SolutionCache(SolutionCache.DEFAULT_CAPACITY);
+    private volatile boolean running = true;
+
+    /**
+     * Bind to the loopback address
+     * @param port port to listen on, or 0 for any free port
+     * @param threads number of worker threads
+     */
+    public SolverServer(int port, int threads) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "solver-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Solve a few random boards with each heuristic so that the searches are
+     * compiled and the heuristic tables are built before the first request
+     * @param rounds boards solved per heuristic
+     */
+    public static void warmUp(int rounds) {
+        Puzzle p = new Puzzle();
+        String[] heuristics = {"h1", "h2", "h4", "h5"};
+        for(int i = 0; i < rounds; i++) {
+            for(String h : heuristics) {
+                p.setInteractiveBoard(Board.goal(BoardSize.EIGHT_PUZZLE));
+                p.generateNRandomMoves(30, i);
+                p = p.newSearch();
+                p.solve("A-star", h);
+            }
+        }
+    }
+
+    /**
+     * Serve connections until {@link #close} is called, then close every connection
+     */
+    public void run() throws IOException {
+        try {
+            serve();
+        }
+        finally {
+            workers.shutdownNow();
+            for(SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+    }
+
+    private void serve() throws IOException {
+        while(running) {
+            selector.select();
+            writeFinished();
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if(!key.isValid()) {
+                    continue;
+                }
+                try {
+                    if(key.isAcceptable()) {
+                        accept();
+                    }
+                    else {
+                        Connection c = (Connection) key.attachment();
+                        if(key.isReadable()) {
+                            c.read();
+                        }
+                        if(key.isValid() && key.isWritable()) {
+                            c.write();
+                        }
+                    }
+                }
+                catch (IOException e) {
+                    if(key.attachment() instanceof Connection) {
+                        ((Connection) key.attachment()).close();
+                    }
+                }
+            }
+            dispatch();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if(channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection c = new Connection(channel, new Session(cache));
+        c.key = channel.register(selector, SelectionKey.OP_READ, c);
+    }
+
+    /**
+     * Hand every idle connection's waiting commands to the workers, one batch per connection
+     */
+    private void dispatch() {
+        for(SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if(!(attachment instanceof Connection)) {
+                continue;
+            }
+            Connection c = (Connection) attachment;
+            if(c.busy || c.pending.isEmpty() || !c.channel.isOpen()) {
+                continue;
+            }
+            List<String> batch = new ArrayList<>(c.pending);
+            c.pending.clear();
+            c.busy = true;
+            workers.execute(() -> {
+                try {
+                    c.response = c.session.execute(batch);
+                }
+                catch (Throwable e) {
+                    // keep the client in step: it is still owed an answer
+                    c.response = "Error: " + e + System.lineSeparator() + END + System.lineSeparator();
+                }
+                finally {
+                    finished.add(c);
+                    selector.wakeup();
+                }
+            });
+        }
+    }
+
+    private void writeFinished() {
+        Connection c;
+        while((c = finished.poll()) != null) {
+            c.busy = false;
+            if(!c.channel.isOpen()) {
+                continue;
+            }
+            c.outgoing.add(ByteBuffer.wrap(c.response.getBytes(StandardCharsets.UTF_8)));
+            c.response = null;
+            try {
+                c.write();
+            }
+            catch (IOException e) {
+                c.close();
+            }
+        }
+    }
+
+    /**
+     * Stop serving. Safe to call from any thread; {@link #run} returns once the
+     * selector thread notices.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if(selector.isOpen()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Socket state of one client. Only the selector thread touches the buffers;
+     * the session is used by one worker at a time.
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER);
+        private final StringBuilder line = new StringBuilder();
+        private final List<String> pending = new ArrayList<>();
+        private final Queue<ByteBuffer> outgoing = new ArrayDeque<>();
+        private final Session session;
+        private SelectionKey key;
+        private boolean busy;
+        private boolean closing;
+        private volatile String response;
+
+        Connection(SocketChannel channel, Session session) {
+            this.channel = channel;
+            this.session = session;
+        }
+
+        /**
+         * Read what is available and queue every complete line
+         */
+        void read() throws IOException {
+            int count = channel.read(in);
+            if(count < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            while(in.hasRemaining()) {
+                char ch = (char) (in.get() & 0xff);
+                if(ch == '\n') {
+                    String command = line.toString().trim();
+                    line.setLength(0);
+                    if(!command.isEmpty()) {
+                        pending.add(command);
+                    }
+                }
+                else if(ch != '\r') {
+                    line.append(ch);
+                }
+            }
+            in.clear();
+        }
+
+        /**
+         * Write as much of the queued output as the socket takes, and wait for
+         * the socket to be writable again if some is left
+         */
+        void write() throws IOException {
+            while(!outgoing.isEmpty()) {
+                ByteBuffer buffer = outgoing.peek();
+                channel.write(buffer);
+                if(buffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                outgoing.remove();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if(closing || session.isClosed()) {
+                close();
+            }
+        }
+
+        void close() {
+            closing = true;
+            key.cancel();
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                // already gone
+            }
+        }
+    }
+
+    /**
+     * One client's board and settings. Errors are reported to the client,
+     * including anything a command throws, and the commands that read or
+     * write files or run the experiments are not available.
+     */
+    static final class Session {
+        private final CommandProcessor processor;
+
+        /**
+         * @param cache solution cache shared with the other sessions
+         */
+        Session(SolutionCache cache) {
+            Puzzle puzzle = new Puzzle();
+            puzzle.setSolutionCache(cache);
+            this.processor = new CommandProcessor(puzzle, false);
+        }
+
+        /**
+         * Run commands in order
+         * @param commands lines in commands.txt syntax
+         * @return the output of every command, each followed by an {@link #END} line
+         */
+        String execute(List<String> commands) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(buffer, false);
+            for(String command : commands) {
+                if(processor.isExited()) {
+                    break;
+                }
+                try {
+                    processor.execute(Command.parse(command), out);
+                }
+                catch (RuntimeException | Error e) {
+                    out.println("Error: " + e);
+                }
+                out.println(END);
+            }
+            out.flush();
+            return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        boolean isClosed() {
+            return processor.isExited();
+        }
+    }
+
+    /**
+     * @param args optional port and number of worker threads
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        System.out.println("Warming up....");
+        warmUp(20);
+        SolverServer server = new SolverServer(port, threads);
+        System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                + server.getPort() + " with " + threads + " worker threads");
+        server.run();
+    }
+}
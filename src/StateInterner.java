@@ -0,0 +1,132 @@
+import java.util.Arrays;
+
+/**
+ * Assigns dense ids to board states that are too large to pack into a long, so
+ * that they can still be used as {@link StateTable} keys.
+ *
+ * Every distinct state is copied once into a flat byte pool; the id is its index
+ * in the pool. Lookups go through an open-addressing table of ids and compare
+ * the pooled bytes, so two different states never share an id.
+ *
+ * As in {@link StateTable}, each slot is stamped with the generation it was
+ * filled in and only slots of the current generation are live, so clearing
+ * the interner for the next search does not visit every slot.
+ */
+public final class StateInterner {
+    private final int cells;
+    private byte[] pool;
+    private int[] slots;
+    private int[] stamps;
+    private int generation = 1;
+    private int[] hashes;
+    private int mask;
+    private int count;
+
+    /**
+     * @param cells bytes per state
+     */
+    public StateInterner(int cells) {
+        this.cells = cells;
+        this.pool = new byte[cells * 1024];
+        this.hashes = new int[1024];
+        allocateSlots(2048);
+    }
+
+    /**
+     * @param tiles tile number per cell; read but not retained
+     * @return the id of the state, assigning a new one if it has not been seen
+     */
+    public long intern(byte[] tiles) {
+        int hash = Arrays.hashCode(tiles) * 0x9E3779B9;
+        int slot = hash & mask;
+        while(live(slot)) {
+            int id = slots[slot];
+            if(hashes[id] == hash && matches(id, tiles)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = count++;
+        if(id == hashes.length) {
+            hashes = Arrays.copyOf(hashes, id << 1);
+            pool = Arrays.copyOf(pool, (id << 1) * cells);
+        }
+        System.arraycopy(tiles, 0, pool, id * cells, cells);
+        hashes[id] = hash;
+        slots[slot] = id;
+        stamps[slot] = generation;
+        if(count * 2 > slots.length) {
+            allocateSlots(slots.length << 1);
+            for(int i = 0; i < count; i++) {
+                int s = hashes[i] & mask;
+                while(live(s)) {
+                    s = (s + 1) & mask;
+                }
+                slots[s] = i;
+                stamps[s] = generation;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @return a copy of the state with the given id
+     */
+    public byte[] get(long id) {
+        int offset = (int) id * cells;
+        return Arrays.copyOfRange(pool, offset, offset + cells);
+    }
+
+    /**
+     * Copy the state with the given id into a buffer, without allocating
+     * @param dest buffer of at least {@link #getCells()} bytes
+     */
+    public void copyTo(long id, byte[] dest) {
+        System.arraycopy(pool, (int) id * cells, dest, 0, cells);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return bytes per state
+     */
+    public int getCells() {
+        return cells;
+    }
+
+    /**
+     * Forget every state, keeping the allocated storage. Takes constant time
+     * except when the generation counter wraps around.
+     */
+    public void clear() {
+        if(++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        count = 0;
+    }
+
+    private boolean matches(int id, byte[] tiles) {
+        int offset = id * cells;
+        for(int i = 0; i < cells; i++) {
+            if(pool[offset + i] != tiles[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean live(int slot) {
+        return stamps[slot] == generation;
+    }
+
+    private void allocateSlots(int capacity) {
+        slots = new int[capacity];
+        stamps = new int[capacity];
+        generation = 1;
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+
+/**
+ * Closed/visited table for the searches, keyed on packed board states.
+ *
+ * Entries live in parallel primitive arrays (key, best g, parent key) and are
+ * placed by open addressing with linear probing, so a lookup is a few array
+ * reads and never allocates. The table doubles once it is 60% full; growing
+ * only moves primitives around.
+ *
+ * Each slot is stamped with the generation it was filled in, and only slots
+ * of the current generation are live, so clearing the table for the next
+ * search is a counter increment rather than a pass over every slot.
+ */
+public final class StateTable {
+    /** returned by {@link #getG(long)} when the state is not in the table */
+    public static final int MISSING = -1;
+    /** parent key stored for the root of a search */
+    public static final long NO_PARENT = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Receives the entries of {@link #forEach}
+     */
+    public interface EntryVisitor {
+        void visit(long key, int g);
+    }
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] keys;
+    private int[] gValues;
+    private long[] parents;
+    private int[] stamps;
+    private int generation = 1;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    private long lookups;
+    private long probes;
+    private int maxProbe;
+
+    public StateTable() {
+        this(1 << 12);
+    }
+
+    /**
+     * @param expected number of entries the table should hold before its first resize
+     */
+    public StateTable(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    /**
+     * @return the best g recorded for the state, or MISSING
+     */
+    public int getG(long key) {
+        int slot = find(key);
+        return live(slot) ? gValues[slot] : MISSING;
+    }
+
+    /**
+     * @return the parent recorded for the state, or NO_PARENT if there is none
+     */
+    public long getParent(long key) {
+        int slot = find(key);
+        return live(slot) ? parents[slot] : NO_PARENT;
+    }
+
+    public boolean contains(long key) {
+        return live(find(key));
+    }
+
+    /**
+     * Record a state unless it is already known with a g no larger than the new one.
+     * @param key packed state
+     * @param g cost of the path that reached it
+     * @param parent packed state of its predecessor, or NO_PARENT
+     * @return true if the state was new or its g improved
+     */
+    public boolean offer(long key, int g, long parent) {
+        int slot = find(key);
+        if(live(slot)) {
+            if(gValues[slot] <= g) {
+                return false;
+            }
+            gValues[slot] = g;
+            parents[slot] = parent;
+            return true;
+        }
+        insertAt(slot, key, g, parent);
+        return true;
+    }
+
+    /**
+     * Record a state, overwriting whatever was stored for it.
+     */
+    public void put(long key, int g, long parent) {
+        int slot = find(key);
+        if(live(slot)) {
+            gValues[slot] = g;
+            parents[slot] = parent;
+        }
+        else {
+            insertAt(slot, key, g, parent);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Visit every entry, in no particular order
+     */
+    public void forEach(EntryVisitor visitor) {
+        for(int slot = 0; slot < keys.length; slot++) {
+            if(live(slot)) {
+                visitor.visit(keys[slot], gValues[slot]);
+            }
+        }
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public double loadFactor() {
+        return (double) size / keys.length;
+    }
+
+    /**
+     * @return mean number of slots inspected per lookup since the last clear
+     */
+    public double averageProbeLength() {
+        return lookups == 0 ? 0 : (double) probes / lookups;
+    }
+
+    public int maxProbeLength() {
+        return maxProbe;
+    }
+
+    /**
+     * Remove every entry, keeping the current capacity. Takes constant time
+     * except when the generation counter wraps around.
+     */
+    public void clear() {
+        if(++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        size = 0;
+        lookups = 0;
+        probes = 0;
+        maxProbe = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d capacity=%d load=%.2f avgProbe=%.2f maxProbe=%d",
+                size, capacity(), loadFactor(), averageProbeLength(), maxProbe);
+    }
+
+    /**
+     * @return the slot holding the key, or the empty slot where it would go
+     */
+    private int find(long key) {
+        int slot = hash(key) & mask;
+        int length = 1;
+        while(stamps[slot] == generation && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+            length++;
+        }
+        lookups++;
+        probes += length;
+        if(length > maxProbe) {
+            maxProbe = length;
+        }
+        return slot;
+    }
+
+    private boolean live(int slot) {
+        return stamps[slot] == generation;
+    }
+
+    private void insertAt(int slot, long key, int g, long parent) {
+        keys[slot] = key;
+        stamps[slot] = generation;
+        gValues[slot] = g;
+        parents[slot] = parent;
+        if(++size > resizeAt) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldG = gValues;
+        long[] oldParents = parents;
+        int[] oldStamps = stamps;
+        int oldGeneration = generation;
+        allocate(oldKeys.length << 1);
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldStamps[i] == oldGeneration) {
+                long key = oldKeys[i];
+                int slot = hash(key) & mask;
+                while(stamps[slot] == generation) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                stamps[slot] = generation;
+                gValues[slot] = oldG[i];
+                parents[slot] = oldParents[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        gValues = new int[capacity];
+        parents = new long[capacity];
+        stamps = new int[capacity];
+        generation = 1;
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * MAX_LOAD);
+    }
+
+    private static int capacityFor(int expected) {
+        int capacity = MIN_CAPACITY;
+        while(capacity * MAX_LOAD < expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spread the packed tiles over the whole int; consecutive states differ
+     * in only a few nibbles, which would cluster badly under plain truncation.
+     */
+    static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Arrays;
+
+/**
+ * Selection of the smallest keys of a primitive array, in expected linear time.
+ */
+public final class TopK {
+    private TopK() {
+    }
+
+    /**
+     * Move the k smallest of the first n keys to the front of the array, in
+     * ascending order. The order of the other keys is unspecified.
+     * @param keys keys to select from; reordered in place
+     * @param n number of keys in use
+     * @param k number of keys wanted
+     * @return the number selected, min(k, n)
+     */
+    public static int smallest(long[] keys, int n, int k) {
+        if(k >= n) {
+            Arrays.sort(keys, 0, n);
+            return n;
+        }
+        if(k <= 0) {
+            return 0;
+        }
+        int lo = 0;
+        int hi = n - 1;
+        // quickselect with median-of-three pivots; hand over to a sort if the partitions stop shrinking
+        int budget = 2 * (32 - Integer.numberOfLeadingZeros(n));
+        while(hi > lo) {
+            if(budget-- == 0) {
+                Arrays.sort(keys, lo, hi + 1);
+                break;
+            }
+            long pivot = median(keys[lo], keys[(lo + hi) >>> 1], keys[hi]);
+            int i = lo;
+            int j = hi;
+            while(i <= j) {
+                while(keys[i] < pivot) {
+                    i++;
+                }
+                while(keys[j] > pivot) {
+                    j--;
+                }
+                if(i <= j) {
+                    long t = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            // keys[lo..j] <= pivot <= keys[i..hi], and everything between equals the pivot
+            if(k - 1 <= j) {
+                hi = j;
+            }
+            else if(k - 1 >= i) {
+                lo = i;
+            }
+            else {
+                break;
+            }
+        }
+        Arrays.sort(keys, 0, k);
+        return k;
+    }
+
+    private static long median(long a, long b, long c) {
+        if(a < b) {
+            return b < c ? b : a < c ? c : a;
+        }
+        return a < c ? a : b < c ? c : b;
+    }
+}
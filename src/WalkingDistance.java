@@ -0,0 +1,178 @@
+import java.util.Arrays;
+
+/**
+ * Walking distance heuristic (packed sizes only).
+ *
+ * Vertically, a board is summarized by how many tiles of each goal row sit in
+ * each row, plus the blank's row. Every vertical move swaps the blank with one
+ * tile of the row above or below, so the fewest vertical moves that can sort
+ * the tiles into their goal rows is the distance between two such summaries,
+ * which a breadth-first search from the goal summary computes once for all of
+ * them. Columns work the same way with goal columns, and because the goal is
+ * symmetric about its diagonal the same table serves both. Horizontal moves
+ * never change the row summary and vertical ones never change the column
+ * summary, so the two distances add up to an admissible estimate that also
+ * accounts for tiles blocking each other, unlike Manhattan distance.
+ *
+ * A summary is packed into a long with three bits per count and the blank's
+ * line above them. The search fills a {@link StateTable}, which is then
+ * frozen into a read-only open-addressed table: every thread evaluating h5
+ * shares one instance, and a lookup writes nothing.
+ */
+public final class WalkingDistance {
+    private static final WalkingDistance[] STANDARD = new WalkingDistance[BoardSize.MAX_DIMENSION + 1];
+
+    private final BoardSize size;
+    private final int n;
+    // frozen distance table; 0 marks an empty slot, as no summary packs to 0
+    private final long[] keys;
+    private final byte[] distances;
+    private final int mask;
+    private final int entries;
+
+    private WalkingDistance(BoardSize size) {
+        this.size = size;
+        this.n = size.getDimension();
+        StateTable table = build();
+        this.entries = table.size();
+        int capacity = Integer.highestOneBit(Math.max(16, entries * 4) - 1) << 1;
+        this.keys = new long[capacity];
+        this.distances = new byte[capacity];
+        this.mask = capacity - 1;
+        table.forEach((key, g) -> {
+            int slot = StateTable.hash(key) & mask;
+            while(keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            distances[slot] = (byte) g;
+        });
+    }
+
+    /**
+     * The table for a size, built on first use
+     * @param size board size; must be packed
+     */
+    public static WalkingDistance standard(BoardSize size) {
+        if(!size.isPacked()) {
+            throw new IllegalArgumentException("Walking distance supports boards of up to 16 cells, not " + size);
+        }
+        int d = size.getDimension();
+        WalkingDistance wd = STANDARD[d];
+        if(wd == null) {
+            synchronized(WalkingDistance.class) {
+                wd = STANDARD[d];
+                if(wd == null) {
+                    wd = new WalkingDistance(size);
+                    STANDARD[d] = wd;
+                }
+            }
+        }
+        return wd;
+    }
+
+    /**
+     * @return number of distinct row (or column) summaries
+     */
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * @param state packed board
+     * @return vertical plus horizontal walking distance
+     */
+    public int evaluate(long state) {
+        long rows = 0;
+        long columns = 0;
+        for(int cell = 0; cell < size.getCells(); cell++) {
+            int tile = BoardSize.tileAt(state, cell);
+            int row = cell / n;
+            int column = cell % n;
+            if(tile == 0) {
+                rows |= (long) row << blankShift();
+                columns |= (long) column << blankShift();
+            }
+            else {
+                int goal = size.goalCell(tile);
+                rows += 1L << shift(row, goal / n);
+                columns += 1L << shift(column, goal % n);
+            }
+        }
+        return distance(rows) + distance(columns);
+    }
+
+    /**
+     * @return the distance of a summary, or StateTable.MISSING for one no board has
+     */
+    private int distance(long key) {
+        int slot = StateTable.hash(key) & mask;
+        long k;
+        while((k = keys[slot]) != key) {
+            if(k == 0) {
+                return StateTable.MISSING;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return distances[slot];
+    }
+
+    private int shift(int line, int goalLine) {
+        return 3 * (line * n + goalLine);
+    }
+
+    private int blankShift() {
+        return 3 * n * n;
+    }
+
+    private int count(long key, int line, int goalLine) {
+        return (int) (key >>> shift(line, goalLine)) & 7;
+    }
+
+    private StateTable build() {
+        StateTable distances = new StateTable();
+        long goal = 0;
+        for(int line = 0; line < n; line++) {
+            // the goal blank sits on line 0 in place of one of that line's tiles
+            goal += (long) (line == 0 ? n - 1 : n) << shift(line, line);
+        }
+        distances.put(goal, 0, StateTable.NO_PARENT);
+
+        long[] layer = {goal};
+        int layerSize = 1;
+        int level = 0;
+        long countMask = (1L << blankShift()) - 1;
+        while(layerSize > 0) {
+            long[] next = new long[Math.max(16, layerSize * 2)];
+            int nextSize = 0;
+            for(int i = 0; i < layerSize; i++) {
+                long key = layer[i];
+                int blank = (int) (key >>> blankShift());
+                for(int step = -1; step <= 1; step += 2) {
+                    int other = blank + step;
+                    if(other < 0 || other >= n) {
+                        continue;
+                    }
+                    // any tile of the neighbouring line may swap with the blank
+                    for(int goalLine = 0; goalLine < n; goalLine++) {
+                        if(count(key, other, goalLine) == 0) {
+                            continue;
+                        }
+                        long child = (key & countMask) - (1L << shift(other, goalLine))
+                                + (1L << shift(blank, goalLine)) | (long) other << blankShift();
+                        if(distances.offer(child, level + 1, key)) {
+                            if(nextSize == next.length) {
+                                next = Arrays.copyOf(next, nextSize << 1);
+                            }
+                            next[nextSize++] = child;
+                        }
+                    }
+                }
+            }
+            layer = next;
+            layerSize = nextSize;
+            level++;
+        }
+        return distances;
+    }
+}